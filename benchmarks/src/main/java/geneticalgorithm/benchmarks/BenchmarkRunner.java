@@ -0,0 +1,31 @@
+//===========================================================
+// title = BenchmarkRunner.java
+// by = Brian Kim
+// description = the entry point of benchmarks.jar: runs the
+//  selected benchmarks with the GC profiler attached so that
+//  allocation rates are reported next to the timings
+//
+// usage = java -jar benchmarks.jar [regex] [jmh options]
+//===========================================================
+
+package geneticalgorithm.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public class BenchmarkRunner
+{
+    public static void main( String[] args ) throws RunnerException, CommandLineOptionException
+    {
+        Options opts = new OptionsBuilder()
+                .parent( new CommandLineOptions( args ) )
+                .addProfiler( GCProfiler.class )
+                .build();
+        new Runner( opts ).run();
+    }
+}
@@ -0,0 +1,86 @@
+//===========================================================
+// title = BitStringBenchmark.java
+// by = Brian Kim
+// description = JMH benchmarks for single-bit access on
+//  BitString
+//===========================================================
+
+package geneticalgorithm.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import geneticalgorithm.BitString;
+import geneticalgorithm.RandomSource;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BitStringBenchmark
+{
+    @Param({"27", "1000", "65536"})
+    public int n_bits;
+
+    BitString bits;
+    RandomSource rng;
+    int index;
+
+    @Setup
+    public void setup()
+    {
+        rng = new RandomSource(42);
+        bits = new BitString( BitString.randomBitString( n_bits, rng ) );
+    }
+
+    // walks through the bitstring with a large odd stride so that
+    // successive calls touch different words
+    private int nextIndex()
+    {
+        index += 40503;
+        if (index >= n_bits) index %= n_bits;
+        return index;
+    }
+
+    @Benchmark
+    public byte getBit()
+    {
+        return bits.getBit( nextIndex() );
+    }
+
+    @Benchmark
+    public BitString setBit()
+    {
+        bits.setBit( nextIndex(), (byte)(index & 1) );
+        return bits;
+    }
+
+    @Benchmark
+    public BitString complementBit()
+    {
+        bits.complementBit( nextIndex() );
+        return bits;
+    }
+
+    // every bit once, to compare with word-level operations
+    @Benchmark
+    public int scanAllBits()
+    {
+        int count = 0;
+        for (int i = 0; i < n_bits; i++) count += bits.getBit(i);
+        return count;
+    }
+
+    @Benchmark
+    public int cardinality()
+    {
+        return bits.cardinality();
+    }
+}
@@ -0,0 +1,59 @@
+//===========================================================
+// title = ChromosomeBenchmark.java
+// by = Brian Kim
+// description = JMH benchmarks for the genetic operators on
+//  Chromosome
+//===========================================================
+
+package geneticalgorithm.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import geneticalgorithm.Chromosome;
+import geneticalgorithm.OneMax;
+import geneticalgorithm.RandomSource;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ChromosomeBenchmark
+{
+    @Param({"27", "1000", "65536"})
+    public int n_bits;
+
+    @Param({"1", "8"})
+    public int volume;
+
+    Chromosome mom, dad;
+    RandomSource rng;
+
+    @Setup
+    public void setup()
+    {
+        rng = new RandomSource(42);
+        mom = OneMax.newChromosome( n_bits, rng );
+        dad = OneMax.newChromosome( n_bits, rng );
+    }
+
+    @Benchmark
+    public Chromosome mutate()
+    {
+        mom.mutate( volume, rng );
+        return mom;
+    }
+
+    @Benchmark
+    public Chromosome crossover()
+    {
+        return mom.crossover( dad, rng.nextInt( n_bits ) );
+    }
+}
@@ -0,0 +1,74 @@
+//===========================================================
+// title = GenerationBenchmark.java
+// by = Brian Kim
+// description = JMH benchmarks for ranking, rating and a full
+//  evolve() step of a Generation
+//
+// notes:
+// - the largest configuration (100k x 64k bits) needs several
+//    GB of heap; narrow the run with -p when exploring
+// - the fitness cache is off: the population never changes
+//    between calls, so rate() would only measure cache hits
+//===========================================================
+
+package geneticalgorithm.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import geneticalgorithm.Generation;
+import geneticalgorithm.OneMax;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class GenerationBenchmark
+{
+    @Param({"8", "1000", "100000"})
+    public int population;
+
+    @Param({"27", "1000", "65536"})
+    public int n_bits;
+
+    Generation gen;
+    double[] fitness;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        gen = OneMax.newGeneration( population, n_bits, 0.02, 42 );
+        gen.setFitnessCache( null );
+        fitness = gen.rate().clone();
+    }
+
+    @Benchmark
+    public int[] sort()
+    {
+        return Generation.sort( fitness );
+    }
+
+    @Benchmark
+    public double[] rate()
+    {
+        return gen.rate();
+    }
+
+    // one full step: rate, rank, select, cross over and mutate
+    @Benchmark
+    public int evolve()
+    {
+        gen.rate();
+        return gen.evolve();
+    }
+}
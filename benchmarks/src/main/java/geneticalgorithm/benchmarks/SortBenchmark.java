@@ -0,0 +1,110 @@
+//===========================================================
+// title = SortBenchmark.java
+// by = Brian Kim
+// description = a JMH benchmark comparing Generation.sort()
+//  (merge sort ranking) against the original selection-based
+//  ranking routine it replaced
+//===========================================================
+
+package geneticalgorithm.benchmarks;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import geneticalgorithm.Generation;
+import geneticalgorithm.Ranking;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SortBenchmark
+{
+    @Param({"8", "1000", "5000"})
+    public int population;
+
+    double[] fitness;
+    int[] order, scratch, top;
+    Ranking ranking;
+
+    @Setup
+    public void setup()
+    {
+        SplittableRandom rng = new SplittableRandom(42);
+        fitness = new double[population];
+        for (int i = 0; i < population; i++) fitness[i] = rng.nextDouble();
+        order = new int[population];
+        scratch = new int[population];
+        top = new int[population];
+        ranking = new Ranking();
+    }
+
+    @Benchmark
+    public int[] legacySort()
+    {
+        return legacySort( fitness );
+    }
+
+    @Benchmark
+    public int[] generationSort()
+    {
+        return Generation.sort( fitness );
+    }
+
+    @Benchmark
+    public int[] reusedRanking()
+    {
+        return ranking.rank( fitness );
+    }
+
+    @Benchmark
+    public int[] topTenPercent()
+    {
+        Ranking.topK( fitness, Math.max( 1, population / 10 ), top );
+        return top;
+    }
+
+    // the O(n^3) routine Generation.sort() used before Ranking,
+    // kept here only as the baseline for comparison
+    static int[] legacySort( double[] fitnesses )
+    {
+        int i, j, k;
+        int n = fitnesses.length;
+        int[] y = new int[n];
+        for (i = 0; i < n; i++)
+        {
+            int max_i = 0;
+            double max;
+            for (j = 0, max = 0; j < n; j++)
+            {
+                if (fitnesses[j] > max)
+                {
+                    double oldmax = max;
+                    max = fitnesses[j];
+                    boolean j_exists = false;
+                    for (k = 0; k < i; k++)
+                    {
+                        if (y[k] == j) {
+                            max = oldmax;
+                            j_exists = true;
+                            break;
+                        }
+                    }
+                    if (!j_exists) {
+                        max_i = j;
+                    }
+                }
+            }
+            y[i] = max_i;
+        }
+        return y;
+    }
+}
@@ -0,0 +1,133 @@
+//===========================================================
+// title = CheckpointTest.java
+// by = Brian Kim
+// description = round trips of the checkpoint file format
+//  (Checkpoint.save() / restore())
+//===========================================================
+
+package geneticalgorithm;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class CheckpointTest
+{
+    @TempDir
+    Path dir;
+
+    // asserts that <b> holds the same state as <a>
+    private static void assertSameState( Generation a, Generation b )
+    {
+        assertEquals( a.getPopulationSize(), b.getPopulationSize() );
+        assertEquals( a.getCount(), b.getCount() );
+        assertEquals( a.getEvaluations(), b.getEvaluations() );
+        assertEquals( a.getEliteCount(), b.getEliteCount() );
+        assertEquals( a.getSteadyState(), b.getSteadyState() );
+        assertEquals( a.isRated(), b.isRated() );
+        for (int i = 0; i < a.getPopulationSize(); i++)
+        {
+            assertEquals( a.getPopulation()[i], b.getPopulation()[i], "chromosome " + i );
+            assertEquals( a.getPopulation()[i].hash64(), b.getPopulation()[i].hash64() );
+            assertEquals( a.getFitness()[i], b.getFitness()[i] );
+        }
+        assertEquals( a.getMostFit(), b.getMostFit() );
+        if (a.getMostFit() != null)
+            assertEquals( a.getMostFitFitness(), b.getMostFitFitness() );
+        assertEquals( a.getRandom().getState(), b.getRandom().getState() );
+        assertEquals( a.getRandom().getGamma(), b.getRandom().getGamma() );
+        assertEquals( a.getMutationRate(), b.getMutationRate() );
+        assertEquals( a.getBitMutationRate(), b.getBitMutationRate() );
+        assertEquals( a.getMutationVolume(), b.getMutationVolume() );
+        assertEquals( a.getMutationMode(), b.getMutationMode() );
+        assertEquals( a.getCrossoverStrategy(), b.getCrossoverStrategy() );
+        assertEquals( a.getCrossoverPoint(), b.getCrossoverPoint() );
+        assertEquals( a.getCrossoverOperator(), b.getCrossoverOperator() );
+    }
+
+    // saves an evolved generation, restores it into one of another size,
+    // and checks both carry on the same way
+    private void roundTrip( boolean store ) throws IOException
+    {
+        Generation a = OneMax.newGeneration( 40, 150, 1 );
+        a.setPopulationStore( store );
+        a.setMutationMode( Generation.MutationMode.PerBit );
+        a.setBitMutationRate( 0.01 );
+        a.setCrossoverOperator( Generation.CrossoverOperator.Uniform );
+        a.setEliteCount( 2 );
+        for (int i = 0; i < 5; i++) a.evolve();
+        a.setSteadyState( 6 );
+        a.evolve();
+
+        Path file = dir.resolve( "gen.ckpt" );
+        Checkpoint.save( a, file );
+        Generation b = OneMax.newGeneration( 25, 150, 2 );
+        b.setPopulationStore( store );
+        b.evolve();
+        Checkpoint.restore( b, file );
+        assertSameState( a, b );
+        assertEquals( 6, b.getSteadyState() );
+        assertEquals( 2, b.getEliteCount() );
+
+        for (int i = 0; i < 3; i++)
+        {
+            a.evolve();
+            b.evolve();
+        }
+        assertSameState( a, b );
+    }
+
+    @Test
+    public void roundTrip() throws IOException
+    {
+        roundTrip( false );
+    }
+
+    @Test
+    public void roundTripWithPopulationStore() throws IOException
+    {
+        roundTrip( true );
+    }
+
+    @Test
+    public void badHeaderLeavesGenerationAlone() throws IOException
+    {
+        Generation a = OneMax.newGeneration( 40, 150, 3 );
+        a.evolve();
+        Path file = dir.resolve( "bad.ckpt" );
+        Checkpoint.save( a, file );
+
+        // crossover strategy ordinal, after 8 ints, 2 longs, 2 doubles and 2 ints
+        try (FileChannel ch = FileChannel.open( file, StandardOpenOption.WRITE ))
+        {
+            ByteBuffer b = ByteBuffer.allocate( 4 ).order( ByteOrder.LITTLE_ENDIAN ).putInt( 99 );
+            b.flip();
+            ch.write( b, 72 );
+        }
+
+        Generation b = OneMax.newGeneration( 25, 150, 4 );
+        Chromosome[] before = b.getPopulation();
+        assertThrows( IOException.class, () -> Checkpoint.restore( b, file ) );
+        assertEquals( 25, b.getPopulationSize() );
+        assertSame( before, b.getPopulation() );
+        assertEquals( 0, b.getCount() );
+    }
+
+    @Test
+    public void rejectsOtherChromosomeSize() throws IOException
+    {
+        Generation a = OneMax.newGeneration( 10, 150, 5 );
+        Path file = dir.resolve( "size.ckpt" );
+        Checkpoint.save( a, file );
+        Generation b = OneMax.newGeneration( 10, 151, 6 );
+        assertThrows( IOException.class, () -> Checkpoint.restore( b, file ) );
+    }
+}
@@ -0,0 +1,167 @@
+//===========================================================
+// title = HistoryLogTest.java
+// by = Brian Kim
+// description = round trips of the history log format
+//  (HistoryLog.record() / HistoryReader)
+//===========================================================
+
+package geneticalgorithm;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class HistoryLogTest
+{
+    @TempDir
+    Path dir;
+
+    // copies of the population and fitness of each generation run() logged
+    private List<Chromosome[]> genomes = new ArrayList<Chromosome[]>();
+    private List<double[]> fitness = new ArrayList<double[]>();
+
+    // evolves <gen> <n> times into a log in <dir> with small segments
+    private void run( Generation gen, int n ) throws IOException
+    {
+        try (HistoryLog log = new HistoryLog( dir, true, 4096, 4 ))
+        {
+            gen.setHistory( log );
+            for (int i = 0; i < n; i++)
+            {
+                // evolve() logs the rated population it breeds from
+                if (!gen.isRated()) gen.rate();
+                Chromosome[] pop = new Chromosome[gen.getPopulationSize()];
+                for (int j = 0; j < pop.length; j++) pop[j] = (Chromosome)gen.getPopulation()[j].clone();
+                genomes.add( pop );
+                fitness.add( gen.getFitness().clone() );
+                gen.evolve();
+            }
+            gen.setHistory( null );
+        }
+    }
+
+    // asserts that <r> is the <i>th generation recorded by run()
+    private void assertRecorded( int i, HistoryRecord r )
+    {
+        Chromosome[] pop = genomes.get( i );
+        double[] f = fitness.get( i );
+        assertNotNull( r, "record " + i );
+        assertEquals( pop.length, r.population_size );
+        assertEquals( pop[0].n_bits(), r.n_bits );
+        assertTrue( r.hasPopulation() );
+        double best = Double.NEGATIVE_INFINITY;
+        for (int j = 0; j < pop.length; j++)
+        {
+            assertEquals( new BitString( pop[j] ), r.getGenome( j ), "record " + i + ", chromosome " + j );
+            assertEquals( f[j], r.fitness[j] );
+            best = Math.max( best, f[j] );
+        }
+        assertEquals( best, r.best );
+        assertEquals( best, (double)r.getBest().cardinality() / r.n_bits );
+    }
+
+    @Test
+    public void roundTripAndSeek() throws IOException
+    {
+        Generation gen = OneMax.newGeneration( 20, 130, 1 );
+        run( gen, 30 );
+        try (Stream<Path> files = Files.list( dir ))
+        {
+            assertTrue( files.count() > 1, "several segments" );
+        }
+
+        try (HistoryReader in = new HistoryReader( dir ))
+        {
+            HistoryRecord r = in.next();
+            int first = r.generation;
+            assertRecorded( 0, r );
+            for (int i = 1; i < 30; i++)
+            {
+                r = in.next();
+                assertEquals( first + i, r.generation );
+                assertRecorded( i, r );
+            }
+            assertNull( in.next() );
+
+            for (int k : new int[] {17, 0, 29, 5})
+            {
+                in.seek( first + k );
+                assertRecorded( k, in.next() );
+            }
+            in.seek( first + 30 );
+            assertNull( in.next() );
+        }
+    }
+
+    @Test
+    public void reopeningAppends() throws IOException
+    {
+        Generation gen = OneMax.newGeneration( 20, 130, 2 );
+        run( gen, 10 );
+
+        // as a crash would leave it: half a record at the end of the last segment
+        Path last;
+        try (Stream<Path> files = Files.list( dir ))
+        {
+            last = files.sorted().reduce( ( a, b ) -> b ).get();
+        }
+        try (FileChannel ch = FileChannel.open( last, StandardOpenOption.WRITE, StandardOpenOption.APPEND ))
+        {
+            ByteBuffer half = ByteBuffer.allocate( 12 ).order( ByteOrder.LITTLE_ENDIAN );
+            half.putInt( 0, 1000 );
+            ch.write( half );
+        }
+
+        // a second log on the same directory, as a resumed run would open
+        run( gen, 10 );
+        try (HistoryReader in = new HistoryReader( dir ))
+        {
+            for (int i = 0; i < 20; i++) assertRecorded( i, in.next() );
+            assertNull( in.next() );
+        }
+    }
+
+    @Test
+    public void resumingFromCheckpointReplacesLaterGenerations() throws IOException
+    {
+        Generation gen = OneMax.newGeneration( 20, 130, 3 );
+        run( gen, 12 );
+        Path file = dir.resolve( "gen.ckpt" );
+        Checkpoint.save( gen, file );
+        run( gen, 10 );
+
+        // back to the checkpoint, which the log has gone 10 generations past
+        Generation resumed = OneMax.newGeneration( 20, 130, 4 );
+        Checkpoint.restore( resumed, file );
+        resumed.setMutationRate( 0.5 );
+        genomes.subList( 12, genomes.size() ).clear();
+        fitness.subList( 12, fitness.size() ).clear();
+        run( resumed, 4 );
+
+        try (HistoryReader in = new HistoryReader( dir ))
+        {
+            HistoryRecord r = in.next();
+            int first = r.generation;
+            assertRecorded( 0, r );
+            for (int i = 1; i < 16; i++)
+            {
+                r = in.next();
+                assertEquals( first + i, r.generation );
+                assertRecorded( i, r );
+            }
+            assertNull( in.next() );
+        }
+    }
+}
@@ -0,0 +1,93 @@
+//===========================================================
+// title = OneMax.java
+// by = Brian Kim
+// description = a minimal chromosome, fitness function and
+//  generation of any size, used by the tests and as the
+//  workload for the benchmarks
+//
+// notes:
+// - fitness is the fraction of bits set to 1 (the classic
+//    OneMax problem), so rating cost scales with n_bits/64
+// - shipped in the core test jar, which the benchmarks
+//    module depends on
+//===========================================================
+
+package geneticalgorithm;
+
+public class OneMax
+{
+    private static final Encodable[] NO_COMPONENTS = new Encodable[0];
+
+    // a chromosome that is nothing but its bits
+    public static class BitsChromosome extends Chromosome
+    {
+        public BitsChromosome( BitString bits )
+        {
+            super( bits );
+        }
+
+        public BitsChromosome( Chromosome ch )
+        {
+            super( ch );
+        }
+
+        @Override
+        public Encodable[] decode()
+        {
+            return NO_COMPONENTS;
+        }
+
+        @Override
+        public Object clone()
+        {
+            return new BitsChromosome( this );
+        }
+    }
+
+    // fraction of 1 bits
+    public static class Fitness implements FitnessFunction
+    {
+        @Override
+        public double rate( Object x )
+        {
+            Chromosome chr = (Chromosome)x;
+            return (double)chr.cardinality() / chr.n_bits();
+        }
+
+        @Override
+        public boolean isThreadSafe()
+        {
+            return true;
+        }
+    }
+
+    // a generation of <pop> random chromosomes of <n_bits> bits
+    public static Generation newGeneration( int pop, int n_bits, long seed )
+    {
+        return newGeneration( pop, n_bits, 0.05, seed );
+    }
+
+    // as above, mutating with probability <mutation_rate>
+    public static Generation newGeneration( int pop, final int n_bits, double mutation_rate, long seed )
+    {
+        return new Generation( pop, mutation_rate, 1, Generation.CrossoverStrategy.Parent1Hi_Parent2Lo,
+                Generation.CrossoverPoint.Random, seed ) {
+            @Override
+            protected Chromosome[] initial_population( int n ) {
+                Chromosome[] y = new Chromosome[n];
+                for (int i = 0; i < n; i++) y[i] = newChromosome( n_bits, rng );
+                return y;
+            }
+            @Override
+            protected FitnessFunction fitness_function() {
+                return new Fitness();
+            }
+        };
+    }
+
+    // a single random chromosome of <n_bits> bits
+    public static BitsChromosome newChromosome( int n_bits, RandomSource rng )
+    {
+        return new BitsChromosome( new BitString( BitString.randomBitString( n_bits, rng ) ) );
+    }
+}
@@ -0,0 +1,93 @@
+//===========================================================
+// title = PipelinedEvolutionTest.java
+// by = Brian Kim
+// description = runs of PipelinedEvolution on several
+//  evaluator threads, to a target and with a failing
+//  fitness function
+//===========================================================
+
+package geneticalgorithm;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+public class PipelinedEvolutionTest
+{
+    // asserts that every fitness in <gen> is that of its chromosome
+    private static void assertConsistent( Generation gen )
+    {
+        OneMax.Fitness f = new OneMax.Fitness();
+        for (int i = 0; i < gen.getPopulationSize(); i++)
+            assertEquals( f.rate( gen.getPopulation()[i] ), gen.getFitness()[i], "chromosome " + i );
+    }
+
+    // evolves OneMax on 4 evaluator threads until one chromosome is all ones
+    private void reachesTarget( boolean store )
+    {
+        Generation gen = OneMax.newGeneration( 40, 64, 1 );
+        gen.setPopulationStore( store );
+        gen.setFitnessCache( null );
+        gen.setMutationMode( Generation.MutationMode.PerBit );
+        gen.setBitMutationRate( 1.0 / 64 );
+        gen.rate();
+        long before = gen.getEvaluations();
+
+        PipelinedEvolution p = new PipelinedEvolution( gen, 4 );
+        Chromosome best = p.run( 1000000, 1.0 );
+        assertEquals( 64, best.cardinality() );
+        assertEquals( 1.0, gen.getMostFitFitness() );
+        assertTrue( p.getEvaluations() < 1000000, "stopped at the target" );
+        assertEquals( before + p.getEvaluations(), gen.getEvaluations() );
+        assertEquals( p.getEvaluations() / 40, (long)gen.getCount() );
+        assertConsistent( gen );
+    }
+
+    @Test
+    public void reachesTargetOnSeveralThreads()
+    {
+        reachesTarget( false );
+    }
+
+    @Test
+    public void reachesTargetWithPopulationStore()
+    {
+        reachesTarget( true );
+    }
+
+    @Test
+    public void failingFitnessFunctionStopsTheRun()
+    {
+        final IllegalStateException boom = new IllegalStateException( "boom" );
+        final AtomicLong calls = new AtomicLong();
+        Generation gen = new Generation( 20, 0.05, 1, Generation.CrossoverStrategy.Parent1Hi_Parent2Lo,
+                Generation.CrossoverPoint.Random, 2 ) {
+            @Override
+            protected Chromosome[] initial_population( int n ) {
+                Chromosome[] y = new Chromosome[n];
+                for (int i = 0; i < n; i++) y[i] = OneMax.newChromosome( 64, rng );
+                return y;
+            }
+            @Override
+            protected FitnessFunction fitness_function() {
+                return new OneMax.Fitness() {
+                    @Override
+                    public double rate( Object x ) {
+                        // the initial population rates fine, then children fail
+                        if (calls.incrementAndGet() > 100) throw boom;
+                        return super.rate( x );
+                    }
+                };
+            }
+        };
+        gen.setFitnessCache( null );
+
+        PipelinedEvolution p = new PipelinedEvolution( gen, 4 );
+        RuntimeException e = assertThrows( RuntimeException.class, () -> p.run( 1000000, 2.0 ) );
+        assertSame( boom, e.getCause() );
+        assertTrue( p.getEvaluations() < 1000000, "stopped at the failure" );
+        assertConsistent( gen );
+    }
+}
@@ -0,0 +1,276 @@
+//===========================================================
+// title = SocketMigrationTransportTest.java
+// by = Brian Kim
+// description = round trips of the migration wire format
+//  (SocketMigrationTransport.encode() / decode()), and
+//  migrants exchanged between transports over loopback TCP
+//  and Unix domain sockets
+//===========================================================
+
+package geneticalgorithm;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SocketMigrationTransportTest
+{
+    @TempDir
+    Path dir;
+
+    // how long a test waits for the network
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    // <count> random chromosomes of <n_bits> bits
+    private static Chromosome[] migrants( int count, int n_bits, long seed )
+    {
+        RandomSource rng = new RandomSource( seed );
+        Chromosome[] y = new Chromosome[count];
+        for (int i = 0; i < count; i++) y[i] = new Chromosome( new BitString( BitString.randomBitString( n_bits, rng ) ) );
+        return y;
+    }
+
+    // the body of <frame>, after checking its length prefix
+    private static ByteBuffer body( ByteBuffer frame )
+    {
+        int len = frame.getInt();
+        assertEquals( frame.remaining(), len, "frame length" );
+        return frame.slice();
+    }
+
+    @Test
+    public void roundTrip() throws IOException
+    {
+        // 1 word, a partial last word and several words
+        for (int n_bits : new int[] {1, 64, 100, 1000})
+        {
+            Chromosome[] out = migrants( 5, n_bits, n_bits );
+            Chromosome[] in = SocketMigrationTransport.decode(
+                    body( SocketMigrationTransport.encode( out ) ), out[0] );
+            assertEquals( out.length, in.length );
+            for (int i = 0; i < out.length; i++)
+            {
+                assertEquals( out[i], in[i], n_bits + " bits, chromosome " + i );
+                assertEquals( out[i].hash64(), in[i].hash64() );
+            }
+        }
+    }
+
+    @Test
+    public void decodedMigrantsDoNotKeepTheTemplateHash() throws IOException
+    {
+        Chromosome template = migrants( 1, 100, 7 )[0];
+        template.hash64();
+        Chromosome[] out = migrants( 4, 100, 8 );
+        Set<Chromosome> sent = new HashSet<Chromosome>();
+        for (Chromosome chr : out)
+        {
+            chr.hash64();
+            sent.add( chr );
+        }
+
+        Chromosome[] in = SocketMigrationTransport.decode(
+                body( SocketMigrationTransport.encode( out ) ), template );
+        for (int i = 0; i < out.length; i++)
+        {
+            in[i].hash64();
+            assertEquals( out[i].hash64(), in[i].hash64(), "chromosome " + i );
+            assertEquals( out[i].hashCode(), in[i].hashCode() );
+            assertEquals( out[i], in[i] );
+            assertTrue( sent.contains( in[i] ) );
+        }
+    }
+
+    @Test
+    public void clearsPaddingBits() throws IOException
+    {
+        Chromosome[] out = migrants( 1, 100, 9 );
+        ByteBuffer b = body( SocketMigrationTransport.encode( out ) );
+
+        // bits 100..127 of the last word are padding
+        int last = 12 + 8;
+        b.putLong( last, b.getLong( last ) | (-1L << 36) );
+        Chromosome[] in = SocketMigrationTransport.decode( b, out[0] );
+        assertEquals( out[0], in[0] );
+        assertEquals( out[0].hash64(), in[0].hash64() );
+    }
+
+    @Test
+    public void emptyFrame() throws IOException
+    {
+        Chromosome template = migrants( 1, 70, 1 )[0];
+        ByteBuffer frame = SocketMigrationTransport.encode( new Chromosome[0] );
+        assertEquals( 0, SocketMigrationTransport.decode( body( frame ), template ).length );
+    }
+
+    @Test
+    public void rejectsCountTheFrameCannotHold()
+    {
+        Chromosome template = migrants( 1, 128, 2 )[0];
+        ByteBuffer frame = ByteBuffer.allocate( 12 );
+        frame.putInt( SocketMigrationTransport.MAGIC ).putInt( 128 ).putInt( 1 << 28 ).flip();
+        assertThrows( IOException.class, () -> SocketMigrationTransport.decode( frame, template ) );
+
+        ByteBuffer negative = ByteBuffer.allocate( 12 );
+        negative.putInt( SocketMigrationTransport.MAGIC ).putInt( 128 ).putInt( -1 ).flip();
+        assertThrows( IOException.class, () -> SocketMigrationTransport.decode( negative, template ) );
+    }
+
+    @Test
+    public void rejectsTruncatedFrame()
+    {
+        Chromosome[] out = migrants( 3, 200, 3 );
+        ByteBuffer b = body( SocketMigrationTransport.encode( out ) );
+        ByteBuffer truncated = b.slice( 0, b.remaining() - 8 );
+        assertThrows( IOException.class, () -> SocketMigrationTransport.decode( truncated, out[0] ) );
+    }
+
+    @Test
+    public void rejectsOtherSizesAndMagic()
+    {
+        Chromosome[] out = migrants( 2, 100, 4 );
+        ByteBuffer b = body( SocketMigrationTransport.encode( out ) );
+        Chromosome other = migrants( 1, 99, 5 )[0];
+        assertThrows( IOException.class, () -> SocketMigrationTransport.decode( b.duplicate(), other ) );
+
+        ByteBuffer bad = b.duplicate();
+        bad.putInt( 0, 0x12345678 );
+        assertThrows( IOException.class, () -> SocketMigrationTransport.decode( bad, out[0] ) );
+    }
+
+    // waits until <peer> of <t> is connected
+    private static void awaitConnected( SocketMigrationTransport t, int peer ) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!t.isConnected( peer ))
+        {
+            assertTrue( System.currentTimeMillis() < deadline, "peer " + peer + " never connected" );
+            Thread.sleep( 10 );
+        }
+    }
+
+    // the chromosomes of the next <frames> batches <t> receives
+    private static List<Chromosome> receive( SocketMigrationTransport t, int frames ) throws InterruptedException
+    {
+        List<Chromosome> y = new ArrayList<Chromosome>();
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        for (int got = 0; got < frames; )
+        {
+            Chromosome[] in = t.receive();
+            if (in == null)
+            {
+                assertTrue( System.currentTimeMillis() < deadline, "received " + got + " of " + frames + " frames" );
+                Thread.sleep( 5 );
+                continue;
+            }
+            for (Chromosome chr : in) y.add( chr );
+            got++;
+        }
+        return y;
+    }
+
+    // <a> and <b> send each other small and large batches (large ones
+    // take several writes and grow the read buffer)
+    private static void exchange( SocketMigrationTransport a, SocketMigrationTransport b ) throws Exception
+    {
+        int ab = a.connect( b.getLocalAddress() );
+        int ba = b.connect( a.getLocalAddress() );
+        awaitConnected( a, ab );
+        awaitConnected( b, ba );
+
+        Chromosome[] small = migrants( 1, 60000, 10 );
+        Chromosome[] large = migrants( 40, 60000, 11 );
+        assertTrue( a.send( ab, small ) );
+        assertTrue( a.send( ab, large ) );
+        assertTrue( b.send( ba, large ) );
+
+        List<Chromosome> at_b = receive( b, 2 );
+        List<Chromosome> at_a = receive( a, 1 );
+        assertEquals( small.length + large.length, at_b.size() );
+        for (int i = 0; i < small.length; i++) assertEquals( small[i], at_b.get( i ) );
+        for (int i = 0; i < large.length; i++)
+        {
+            assertEquals( large[i], at_b.get( small.length + i ) );
+            assertEquals( large[i], at_a.get( i ) );
+        }
+        assertNull( a.receive() );
+        assertNull( b.receive() );
+    }
+
+    @Test
+    public void exchangeOverTcp() throws Exception
+    {
+        Chromosome template = migrants( 1, 60000, 12 )[0];
+        InetSocketAddress any = new InetSocketAddress( InetAddress.getLoopbackAddress(), 0 );
+        try (SocketMigrationTransport a = new SocketMigrationTransport( any, template );
+             SocketMigrationTransport b = new SocketMigrationTransport( any, template ))
+        {
+            exchange( a, b );
+        }
+    }
+
+    @Test
+    public void exchangeOverUnixDomainSockets() throws Exception
+    {
+        Chromosome template = migrants( 1, 60000, 13 )[0];
+        try (SocketMigrationTransport a = new SocketMigrationTransport(
+                    UnixDomainSocketAddress.of( dir.resolve( "a.sock" ) ), template );
+             SocketMigrationTransport b = new SocketMigrationTransport(
+                    UnixDomainSocketAddress.of( dir.resolve( "b.sock" ) ), template ))
+        {
+            exchange( a, b );
+        }
+    }
+
+    @Test
+    public void reconnectsToAPeerThatStartsLate() throws Exception
+    {
+        Chromosome[] out = migrants( 2, 100, 14 );
+        SocketAddress late = UnixDomainSocketAddress.of( dir.resolve( "late.sock" ) );
+        try (SocketMigrationTransport a = new SocketMigrationTransport(
+                UnixDomainSocketAddress.of( dir.resolve( "early.sock" ) ), out[0] ))
+        {
+            int peer = a.connect( late );
+            Thread.sleep( 3 * SocketMigrationTransport.RETRY_MIN_MILLIS );
+            assertFalse( a.isConnected( peer ) );
+
+            // queued while unreachable, sent once connected
+            assertTrue( a.send( peer, out ) );
+            try (SocketMigrationTransport b = new SocketMigrationTransport( late, out[0] ))
+            {
+                awaitConnected( a, peer );
+                List<Chromosome> in = receive( b, 1 );
+                assertEquals( out[0], in.get( 0 ) );
+                assertEquals( out[1], in.get( 1 ) );
+            }
+        }
+    }
+
+    @Test
+    public void dropsFramesPastTheQueueBound() throws Exception
+    {
+        Chromosome[] out = migrants( 1, 100, 15 );
+        try (SocketMigrationTransport a = new SocketMigrationTransport(
+                UnixDomainSocketAddress.of( dir.resolve( "a.sock" ) ), out[0] ))
+        {
+            int peer = a.connect( UnixDomainSocketAddress.of( dir.resolve( "nobody.sock" ) ) );
+            for (int i = 0; i < SocketMigrationTransport.MAX_QUEUED; i++) assertTrue( a.send( peer, out ) );
+            for (int i = 0; i < 5; i++) assertFalse( a.send( peer, out ) );
+            assertEquals( 5, a.getDropped( peer ) );
+            assertFalse( a.isConnected( peer ) );
+        }
+    }
+}
@@ -0,0 +1,23 @@
+//===========================================================
+// title = BatchFitnessFunction.java
+// by = Brian Kim
+// description = a fitness function that rates a whole slice
+//  of a population in one call
+//
+// notes:
+// - for fitness functions that vectorize, or that pay for some
+//    setup (lookup tables, simulation state) once per call
+// - Generation prefers the batch method whenever its fitness
+//    function implements this interface; rate(Object) is still
+//    used for single chromosomes (e.g. by PipelinedEvolution)
+// - a thread-safe batch function may be called on several
+//    disjoint slices at once by a parallel Evaluator
+//===========================================================
+
+package geneticalgorithm;
+
+public interface BatchFitnessFunction extends FitnessFunction
+{
+    // rates population[from, to) into fitness[from, to)
+    public void rate( Chromosome[] population, int from, int to, double[] fitness );
+}
@@ -0,0 +1,136 @@
+//===========================================================
+// title = BitCodec.java
+// by = Brian Kim
+// description = reads and writes k-bit integers (unsigned,
+//  two's complement signed, and Gray coded) at any bit offset
+//  of a bitstring
+//
+// notes:
+// - fields are 1..64 bits, most significant bit at the lowest
+//    index, like the left-most character of toString()
+// - everything is shifts on the packed words (see
+//    BitString.readUnsigned()); Gray decoding of fields up to 8
+//    bits, the usual gene size, goes through a 256-entry table,
+//    and a shift cascade handles longer ones
+// - Gray coding makes neighbouring values differ in one bit, so
+//    a single mutation moves a gene by a small step
+// - the String helpers parse/format binary text without any
+//    floating point or String concatenation
+//===========================================================
+
+package geneticalgorithm;
+
+public class BitCodec
+{
+    //
+    // properties (instance variables)
+    //
+
+    // GRAY_DECODE[g] = the 8-bit value whose Gray code is g
+    private static final byte[] GRAY_DECODE = new byte[256];
+    static {
+        for (int v = 0; v < 256; v++) GRAY_DECODE[v ^ (v >>> 1)] = (byte)v;
+    }
+
+    //
+    // unsigned
+    //
+
+    public static long readUnsigned( BitString b, int offset, int len )
+    {
+        return b.readUnsigned( offset, len );
+    }
+
+    public static void writeUnsigned( BitString b, int offset, int len, long val )
+    {
+        b.writeUnsigned( offset, len, val );
+    }
+
+    //
+    // two's complement signed
+    //
+
+    // the <len> bit field at <offset> as a signed number in
+    // [-2^(len-1), 2^(len-1))
+    public static long readSigned( BitString b, int offset, int len )
+    {
+        if (len <= 0) return 0;
+        return (b.readUnsigned( offset, len ) << (64 - len)) >> (64 - len);
+    }
+
+    // writes the low <len> bits of <val> (two's complement)
+    public static void writeSigned( BitString b, int offset, int len, long val )
+    {
+        b.writeUnsigned( offset, len, val );
+    }
+
+    //
+    // Gray code
+    //
+
+    // the Gray code of <v>
+    public static long toGray( long v )
+    {
+        return v ^ (v >>> 1);
+    }
+
+    // the value whose Gray code is <g>
+    public static long fromGray( long g )
+    {
+        if ((g & ~0xffL) == 0) return GRAY_DECODE[(int)g] & 0xffL;
+        g ^= g >>> 1;
+        g ^= g >>> 2;
+        g ^= g >>> 4;
+        g ^= g >>> 8;
+        g ^= g >>> 16;
+        g ^= g >>> 32;
+        return g;
+    }
+
+    // the <len> bit Gray coded field at <offset> as an unsigned number
+    public static long readGray( BitString b, int offset, int len )
+    {
+        return fromGray( b.readUnsigned( offset, len ) );
+    }
+
+    // writes the low <len> bits of <val> Gray coded
+    public static void writeGray( BitString b, int offset, int len, long val )
+    {
+        if (len < 64) val &= (1L << len) - 1;
+        b.writeUnsigned( offset, len, toGray( val ) );
+    }
+
+    //
+    // binary text
+    //
+
+    // the characters [from, to) of <s> read as an unsigned binary number
+    // (any character but '1' counts as 0; at most 64 digits are kept)
+    public static long parseUnsigned( CharSequence s, int from, int to )
+    {
+        long val = 0;
+        for (int i = from; i < to; i++)
+        {
+            val = (val << 1) | (s.charAt( i ) == '1' ? 1 : 0);
+        }
+        return val;
+    }
+
+    // the low <count> bits of <x> as binary text, most significant first
+    public static String format( long x, int count )
+    {
+        char[] s = new char[Math.max( 0, count )];
+        for (int i = count - 1; i >= 0; i--)
+        {
+            s[i] = (char)('0' + (x & 1));
+            x >>>= 1;
+        }
+        return new String( s );
+    }
+
+    // the number of binary digits of <x> (1 for 0 and 1)
+    public static int digits( long x )
+    {
+        return x <= 1 ? 1 : 64 - Long.numberOfLeadingZeros( x );
+    }
+}
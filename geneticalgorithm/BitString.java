@@ -6,29 +6,46 @@
 //  encoding is done through the Encodable interface
 // 
 // notes:
-// - implemented as an array of bytes
-// - consider an array a of n bytes:
+// - implemented as a packed array of longs (64 bits per word)
+// - bit i lives in word i/64 at position i%64
 //  - index = 0 represents:
-//     the left-most (first) element of a's memory block
+//     the left-most (first) character of toString()
 //  - index = n-1 represents:
-//     the right-most (last) element of a's memory block
-// - however, for bitstrings,  bit 0 is the 
-//    right most digit.
-// - we solve this by converting all our array indicies 
-//    to little endian using our toggleEnd() method 
-//    so that our addressing scheme is more consistent 
+//     the right-most (last) character of toString()
+// - a bitstring may be a view of n_words words starting at
+//    words[base] inside a larger shared array (see bind() and
+//    PopulationStore); every word access goes through base
+// - unused high bits of the last word are always kept at 0
+//    so that word-level operations (popcount, equality)
+//    never need to mask them out
+// - getBits()/setBits(byte[]) still speak the old one bit
+//    per byte format, where the array is addressed through
+//    toggleEnd() so that byte 0 holds bit n-1
+// - hash64() is Zobrist style: the XOR of a mixed key per
+//    (word index, word value), so changing one word swaps one
+//    key for another; setBit()/complementBit() update it in
+//    O(1) and range copies in O(words touched), while an
+//    unknown hash (after bind(), or direct word writes followed
+//    by changed()) is recomputed lazily in O(n_words)
 //===========================================================
 
 package geneticalgorithm;
 
+import java.util.Arrays;
+
 public class BitString
 {
     //
     // properties (instance variables)
     //
     protected int n_bits; // = size of bitstring
-    protected byte[] bits; // = internal storage of bits as an array of bytes
-    protected Integer bits_i; // = internal storage of bits as an Integer
+    protected long[] words; // = internal storage of bits, 64 per long
+    protected int base;     // = index of this bitstring's first word in words
+    protected int n_words;  // = number of words used by this bitstring
+    
+    // XOR of mix(w, word w) over every word, valid when hashed
+    private long hash;
+    private boolean hashed;
     
     private static String err_msg() { return "error: BitString: "; }
             
@@ -40,14 +57,15 @@ public class BitString
     public BitString( int n )
     {
         n_bits = n;
-        bits = new byte[n];
+        n_words = wordCount(n);
+        words = new long[n_words];
     }
     
     // constructor method with array of bits (byte) specified
     public BitString( byte[] b )
     {
         this( b.length );
-        bits = b;
+        setBits( b );
     }
     
     // constructor method with a character string of bits specified
@@ -57,32 +75,65 @@ public class BitString
         setBits( s );
     }
     
+    // copy constructor: a word-level copy of <b>
+    public BitString( BitString b )
+    {
+        n_bits = b.n_bits;
+        n_words = b.n_words;
+        words = Arrays.copyOfRange( b.words, b.base, b.base + b.n_words );
+        hash = b.hash;
+        hashed = b.hashed;
+    }
+    
     
     //
     // accessor methods
     //
     
+    // the value of the bitstring read as an unsigned binary number
+    // (only meaningful for bitstrings of 31 bits or less)
     public Integer intValue()
     {
-        return bits_i;
+        int val = 0;
+        for (int i = 0; i < n_bits; i++)
+        {
+            val = (val << 1) | getBit(i);
+        }
+        return val;
+    }
+    
+    // number of bits in the bitstring
+    public int n_bits()
+    {
+        return n_bits;
     }
     
-    // gets the ith bit of the byte array
+    // gets the ith bit of the bitstring
     public byte getBit( int i )
     {
-        return bits[toggleEnd(i)];
+        checkIndex( i );
+        return (byte)((words[base + (i >>> 6)] >>> i) & 1L);
     }
     
-    // sets the ith bit of the byte array to val
+    // sets the ith bit of the bitstring to val
     public void setBit( int i, byte val )
     {
-        bits[toggleEnd(i)] = val != 0 ? (byte)1 : 0;
+        checkIndex( i );
+        int w = i >>> 6;
+        long old = words[base + w];
+        putWord( w, val != 0 ? old | (1L << i) : old & ~(1L << i) );
+        changedHashed();
     }
     
-    // gets the entire array of bits
+    // gets the entire array of bits, one bit per byte
     public byte[] getBits()
     {
-        return bits;
+        byte[] b = new byte[n_bits];
+        for (int i = 0; i < n_bits; i++)
+        {
+            b[toggleEnd(i)] = getBit(i);
+        }
+        return b;
     }
     
     // sets the entire array of bits with a byte array
@@ -90,14 +141,20 @@ public class BitString
     {
         /* 
          * ZZ: what to do with byte arrays whose sizes != n_bits
-         * 
-        if (val.length != n_bits) {
-            String err = err_msg() + "setBits(byte[]): size mismatch";
-            System.err.println(err);
-            return;
+         *  for now the bitstring takes on the size of the array
+         */
+        if (val.length != n_bits)
+        {
+            n_bits = val.length;
+            n_words = wordCount(n_bits);
+            words = new long[n_words];
+            base = 0;
+            hashed = false;
+        }
+        for (int i = 0; i < n_bits; i++)
+        {
+            setBit( i, val[toggleEnd(i)] );
         }
-        * */
-        bits = val;
     }
     
     // sets the entire array of bits with a character string
@@ -119,10 +176,122 @@ public class BitString
         }
     }
     
+    // a copy of the packed words of this bitstring
+    // (the unused high bits of the last word are 0)
+    public long[] getWords()
+    {
+        return Arrays.copyOfRange( words, base, base + n_words );
+    }
+    
+    // number of longs needed to hold this bitstring
+    public int n_words()
+    {
+        return n_words;
+    }
+    
+    // gets the wth word of the bitstring
+    public long getWord( int w )
+    {
+        checkWord( w );
+        return words[base + w];
+    }
+    
+    // sets the wth word of the bitstring, keeping the hash up to date
+    // (it only accounts for this word: after writing words[] directly,
+    // call wordsWritten() instead)
+    public void setWord( int w, long val )
+    {
+        checkWord( w );
+        if (w == n_words - 1) val &= lastWordMask(n_bits);
+        putWord( w, val );
+        changedHashed();
+    }
+    
+    // reads <len> (0..64) bits starting at <offset> as an unsigned
+    // binary number; bit <offset> is the most significant digit,
+    // just as the left-most character of toString() is
+    public long readUnsigned( int offset, int len )
+    {
+        if (len <= 0) return 0;
+        checkField( offset, len );
+        return Long.reverse( readBits( words, base, offset, len ) ) >>> (64 - len);
+    }
+    
+    // writes the low <len> (0..64) bits of <val> starting at <offset>,
+    // most significant digit first (the inverse of readUnsigned)
+    public void writeUnsigned( int offset, int len, long val )
+    {
+        if (len <= 0) return;
+        checkField( offset, len );
+        long h = hashWithout( offset, offset + len );
+        writeBits( offset, len, Long.reverse( val ) >>> (64 - len) );
+        changedWith( h, offset, offset + len );
+    }
+    
     // 
     // utility methods
     //
     
+    // called after every change to the bits
+    // override to invalidate anything derived from them
+    // (and call super.changed(), which forgets the hash)
+    protected void changed()
+    {
+        hashed = false;
+    }
+    
+    // changed(), after words[] was written directly (bulk copies from a
+    // buffer or file): clears the padding of the last word and forgets
+    // the hash
+    final void wordsWritten()
+    {
+        if (n_words > 0) words[base + n_words - 1] &= lastWordMask( n_bits );
+        changed();
+    }
+    
+    // changed(), after a change that has already been put into the hash
+    final void changedHashed()
+    {
+        long h = hash;
+        boolean was = hashed;
+        changed();
+        hash = h;
+        hashed = was;
+    }
+    
+    // every index must be within [0, n_bits): past it lie the padding
+    // bits of the last word, which must stay 0, or in a population
+    // store the words of the next genome
+    private void checkIndex( int i )
+    {
+        if (i >= n_bits || i < 0)
+            throw new IndexOutOfBoundsException( err_msg() + "index " + i + " out of bounds for " + n_bits + " bits" );
+    }
+    
+    // word w must be within [0, n_words): in a population store, the
+    // words around it belong to other genomes
+    private void checkWord( int w )
+    {
+        if (w >= n_words || w < 0)
+            throw new IndexOutOfBoundsException( err_msg() + "word " + w + " out of bounds for " + n_words + " words" );
+    }
+    
+    // a range [from, to) must lie within [0, n_bits), with from <= to
+    private void checkRange( int from, int to )
+    {
+        if (from < 0 || to > n_bits || from > to)
+            throw new IndexOutOfBoundsException( err_msg() + "range [" + from + ", " + to 
+                    + ") out of bounds for " + n_bits + " bits" );
+    }
+    
+    // a field of <len> (1..64) bits at <offset> must lie within [0, n_bits)
+    private void checkField( int offset, int len )
+    {
+        if (len > 64 || offset < 0 || offset > n_bits - len)
+            throw new IndexOutOfBoundsException( err_msg() + "field [" + offset + ", " + offset + "+" + len 
+                    + ") out of bounds for " + n_bits + " bits" );
+    }
+    
     // toggle the big endian end of the byte array to little endian 
     protected int toggleEnd( int i )
     {
@@ -138,21 +307,314 @@ public class BitString
             System.err.println(err);
             return;
         }
-        // get the value of little endian ith bit.
-        byte b = getBit(i);
-        
-        // our complementing function
-        b = b == (byte)0 ? (byte)1 : 0;
-        
-        // set the little endian ith bit to the complemented bit
-        setBit(i, b);
+        // flip the ith bit in place
+        xorWord( i >>> 6, 1L << i );
+        changedHashed();
     }
     
     // returns a random index that is within the bounds of this bit string
     public int randomIndex()
+    {
+        return randomIndex( RandomSource.current() );
+    }
+    public int randomIndex( RandomSource rng )
     {
         // [ 0, n_bits-1 ]
-        return (int)(Math.random() * n_bits);
+        return rng.nextInt( n_bits );
+    }
+    
+    //
+    // word-level (bulk) operations
+    //
+    
+    // copies every bit of <src> into this bitstring
+    // (both must have the same size)
+    public void copyFrom( BitString src )
+    {
+        if (src.n_bits != n_bits) {
+            String err = err_msg() + "copyFrom(BitString): size mismatch";
+            System.err.println(err);
+            return;
+        }
+        System.arraycopy( src.words, src.base, words, base, n_words );
+        changed();
+        hash = src.hash;
+        hashed = src.hashed;
+    }
+    
+    // copies bits [from, to) of <src> into the same positions of this
+    public void copyRange( BitString src, int from, int to )
+    {
+        copyRange( src, from, from, to - from );
+    }
+    
+    // copies <len> bits of <src> starting at <src_pos> into this bitstring
+    // starting at <dst_pos>
+    public void copyRange( BitString src, int src_pos, int dst_pos, int len )
+    {
+        if (len <= 0) return;
+        if (src_pos < 0 || dst_pos < 0 
+                || src_pos + len > src.n_bits || dst_pos + len > n_bits) {
+            String err = err_msg() + "copyRange: index out of bounds";
+            System.err.println(err);
+            return;
+        }
+        long h = hashWithout( dst_pos, dst_pos + len );
+        copyBits( src, src_pos, dst_pos, len );
+        changedWith( h, dst_pos, dst_pos + len );
+    }
+    
+    // the copy of copyRange(), without bounds checks or hashing
+    private void copyBits( BitString src, int src_pos, int dst_pos, int len )
+    {
+        // aligned copy: whole words go through System.arraycopy
+        if ((src_pos & 63) == (dst_pos & 63))
+        {
+            int end = dst_pos + len;
+            int head = Math.min( end, (dst_pos + 63) & ~63 );
+            if (head > dst_pos) 
+                copyWordBits( src.words[src.base + (src_pos >>> 6)], dst_pos, head );
+            int full = (end - head) >>> 6;
+            if (full > 0)
+                System.arraycopy( src.words, src.base + ((src_pos + head - dst_pos) >>> 6),
+                        words, base + (head >>> 6), full );
+            int tail = head + (full << 6);
+            if (tail < end)
+                copyWordBits( src.words[src.base + ((src_pos + tail - dst_pos) >>> 6)], tail, end );
+            return;
+        }
+        
+        // unaligned copy: assemble up to 64 bits at a time
+        // (copy backwards when the ranges overlap within the same bitstring)
+        if (src == this && src_pos < dst_pos)
+        {
+            for (int done = len; done > 0; )
+            {
+                int n = Math.min( 64, done );
+                done -= n;
+                writeBits( dst_pos + done, n, readBits( src.words, src.base, src_pos + done, n ) );
+            }
+            return;
+        }
+        for (int done = 0; done < len; )
+        {
+            int n = Math.min( 64, len - done );
+            writeBits( dst_pos + done, n, readBits( src.words, src.base, src_pos + done, n ) );
+            done += n;
+        }
+    }
+    
+    // turns this bitstring into a view of words [base, base + n_words())
+    // of <storage>; the current bits are NOT copied over
+    protected void bind( long[] storage, int base )
+    {
+        if (base < 0 || base + n_words > storage.length) {
+            String err = err_msg() + "bind: storage too small";
+            System.err.println(err);
+            return;
+        }
+        this.words = storage;
+        this.base = base;
+        changed();
+    }
+    
+    // sets bits [from, to) to 1
+    public void setRange( int from, int to )
+    {
+        checkRange( from, to );
+        long h = hashWithout( from, to );
+        for (int w = from >>> 6, i = from; i < to; w++)
+        {
+            int end = Math.min( to, (w + 1) << 6 );
+            words[base + w] |= rangeMask( i, end );
+            i = end;
+        }
+        changedWith( h, from, to );
+    }
+    
+    // sets bits [from, to) to 0
+    public void clearRange( int from, int to )
+    {
+        checkRange( from, to );
+        long h = hashWithout( from, to );
+        for (int w = from >>> 6, i = from; i < to; w++)
+        {
+            int end = Math.min( to, (w + 1) << 6 );
+            words[base + w] &= ~rangeMask( i, end );
+            i = end;
+        }
+        changedWith( h, from, to );
+    }
+    
+    // flips bits [from, to)
+    public void complementRange( int from, int to )
+    {
+        checkRange( from, to );
+        long h = hashWithout( from, to );
+        for (int w = from >>> 6, i = from; i < to; w++)
+        {
+            int end = Math.min( to, (w + 1) << 6 );
+            words[base + w] ^= rangeMask( i, end );
+            i = end;
+        }
+        changedWith( h, from, to );
+    }
+    
+    // number of bits set to 1
+    public int cardinality()
+    {
+        int count = 0;
+        for (int w = 0; w < n_words; w++)
+        {
+            count += Long.bitCount( words[base + w] );
+        }
+        return count;
+    }
+    
+    // number of bits set to 1 within [from, to)
+    public int cardinality( int from, int to )
+    {
+        checkRange( from, to );
+        int count = 0;
+        for (int w = from >>> 6; from < to; w++)
+        {
+            int end = Math.min( to, (w + 1) << 6 );
+            count += Long.bitCount( words[base + w] & rangeMask( from, end ) );
+            from = end;
+        }
+        return count;
+    }
+    
+    // number of positions at which this and <other> differ
+    public int hammingDistance( BitString other )
+    {
+        int count = 0;
+        int n = Math.min( n_words, other.n_words );
+        for (int w = 0; w < n; w++)
+        {
+            count += Long.bitCount( words[base + w] ^ other.words[other.base + w] );
+        }
+        return count;
+    }
+    
+    //
+    // hashing
+    //
+    
+    // a 64-bit hash of the bits (and the size) of this bitstring:
+    // equal bitstrings have equal hashes
+    public long hash64()
+    {
+        if (!hashed)
+        {
+            long h = 0;
+            for (int w = 0; w < n_words; w++) h ^= mix( w, words[base + w] );
+            hash = h;
+            hashed = true;
+        }
+        return hash ^ mix( n_words, n_bits );
+    }
+    
+    // sets word w to <val>, updating the hash in O(1)
+    // (changedHashed() must follow)
+    final void putWord( int w, long val )
+    {
+        long old = words[base + w];
+        words[base + w] = val;
+        if (hashed) hash ^= mix( w, old ) ^ mix( w, val );
+    }
+    
+    // xors <mask> into word w, updating the hash in O(1)
+    // (changedHashed() must follow)
+    final void xorWord( int w, long mask )
+    {
+        putWord( w, words[base + w] ^ mask );
+    }
+    
+    // the hash without the words holding bits [from, to)
+    // (meaningless when the hash is unknown)
+    private long hashWithout( int from, int to )
+    {
+        long h = hash;
+        if (hashed && from < to)
+        {
+            for (int w = from >>> 6, last = (to - 1) >>> 6; w <= last; w++)
+                h ^= mix( w, words[base + w] );
+        }
+        return h;
+    }
+    
+    // changed(), after the words holding bits [from, to) were rewritten:
+    // their new keys go back into <h>, the result of hashWithout()
+    private void changedWith( long h, int from, int to )
+    {
+        if (hashed && from < to)
+        {
+            for (int w = from >>> 6, last = (to - 1) >>> 6; w <= last; w++)
+                h ^= mix( w, words[base + w] );
+            hash = h;
+        }
+        changedHashed();
+    }
+    
+    // the key of word <w> holding <word>: the SplitMix64 finalizer,
+    // so every bit of the word and of its index reaches every bit
+    private static long mix( int w, long word )
+    {
+        long z = word + (w + 1) * 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+    
+    // replaces bits [from, end) (all within one word) with those of <src>
+    private void copyWordBits( long src, int from, int end )
+    {
+        long mask = rangeMask( from, end );
+        int w = base + (from >>> 6);
+        words[w] = (words[w] & ~mask) | (src & mask);
+    }
+    
+    // reads <n> (1..64) bits starting at <pos>; bit pos lands in bit 0
+    private static long readBits( long[] words, int base, int pos, int n )
+    {
+        int w = base + (pos >>> 6), shift = pos & 63;
+        long val = words[w] >>> shift;
+        if (shift + n > 64) val |= words[w + 1] << (64 - shift);
+        return n == 64 ? val : val & ((1L << n) - 1);
+    }
+    
+    // writes the low <n> (1..64) bits of <val> starting at <pos>
+    private void writeBits( int pos, int n, long val )
+    {
+        int w = base + (pos >>> 6), shift = pos & 63;
+        long mask = n == 64 ? -1L : (1L << n) - 1;
+        words[w] = (words[w] & ~(mask << shift)) | ((val & mask) << shift);
+        if (shift + n > 64)
+        {
+            int spill = 64 - shift;
+            long hi = mask >>> spill;
+            words[w + 1] = (words[w + 1] & ~hi) | ((val >>> spill) & hi);
+        }
+    }
+    
+    // mask for bits [from, end) of a single word, from < end <= next word
+    private static long rangeMask( int from, int end )
+    {
+        long lo = -1L << from;
+        return (end & 63) == 0 ? lo : lo & ~(-1L << end);
+    }
+    
+    // mask for the valid bits of the last word of an n bit string
+    protected static long lastWordMask( int n )
+    {
+        return (n & 63) == 0 ? -1L : (1L << n) - 1;
+    }
+    
+    // number of longs needed to hold n bits
+    public static int wordCount( int n )
+    {
+        return (n + 63) >>> 6;
     }
     
     @Override
@@ -169,13 +631,28 @@ public class BitString
         return new String(s);
     }
     
+    // equal when of the same class with the same bits, compared word
+    // by word (a known hash that differs settles it at once)
     @Override
     public boolean equals( Object obj )
     {
-        // if obj is a BitString
-        if (obj.getClass()==this.getClass())
-            return ((BitString)obj).intValue().equals( this.intValue() );
-        return false;
+        if (obj == this) return true;
+        if (obj == null || obj.getClass() != this.getClass()) return false;
+        BitString b = (BitString)obj;
+        if (b.n_bits != n_bits) return false;
+        if (hashed && b.hashed && hash != b.hash) return false;
+        for (int w = 0; w < n_words; w++)
+        {
+            if (words[base + w] != b.words[b.base + w]) return false;
+        }
+        return true;
+    }
+    
+    @Override
+    public int hashCode()
+    {
+        long h = hash64();
+        return (int)(h ^ (h >>> 32));
     }
     
     //
@@ -186,72 +663,37 @@ public class BitString
     public static int countBin( int n )
     {
       // count the number of bits for x
-      int count = 1;
-      while( n > 1 )
-      {
-        // increment count and divide n by 2
-        count++;
-        n /= 2;    
-      }
-      return count;
+      return BitCodec.digits( n );
     }
     
     // converts a binary string to a decimal value (int)
     public static int bin2dec( String binary )
     {
-        // returning val which represents the sum
-        int val = 0;
-        
-        // iterating through the bit string
-        int size = binary.length();
-        for (int i = 0; i < size; i++)
-        {
-            // convert to the ith digit in the bit string
-            int digit = size - i - 1;
-            
-            // if the bit is 1, add the value of 2 raised its digit
-            char b = binary.charAt(i);
-            if (b == '1') val += Math.pow( 2, digit );
-        }
-        return val;
+        return (int)BitCodec.parseUnsigned( binary, 0, binary.length() );
     }
     
     // converts a bit string to a decimal value (int)
     public static int bits2dec( BitString bitstring )
     {
-        return bin2dec( bitstring.toString() );
+        int n = bitstring.n_bits;
+        return (int)bitstring.readUnsigned( Math.max( 0, n - 64 ), Math.min( n, 64 ) );
     }
     
     // converts an integer value to a bit string
     public static BitString dec2bits( int x )
     {
-        return new BitString( dec2bin(x) );  
+        int n = countBin(x);
+        BitString y = new BitString( n );
+        if (x > 0) y.writeUnsigned( 0, n, x );
+        return y;
     }
     
 
-    // converts an integer value to a binary character string
+    // converts an integer value to a binary character string of its
+    // low <count> digits (all 0's for a negative value)
     public static String dec2bin( int x, int count )
     {
-        int n = x;
-        char[] s = new char[count];
-
-        // keep looping through powers of 2 
-        for (int i = 0; i < count; i++)
-        {
-          // get the decimal value of each digit
-          int next = (int)Math.pow( 2, count-i-1 );
-          // check the value of next: printf( "2^%d = %d\n", count, next );
-
-          // if the input value n is less than the calculated next, put 0
-          if (next > n) s[i] = '0';
-          else 
-          {
-            // if n is greater than next, put 1 and subtract next by n
-            s[i] = '1';
-            n -= next; 
-          }
-        }
-        return new String(s);
+        return BitCodec.format( x < 0 ? 0 : x, count );
     }
     public static String dec2bin( int x )
     {
@@ -262,14 +704,20 @@ public class BitString
     // returns a random bit string object that is n bits long
     public static String randomBitString( int n )
     {
-        // building the string y
-        String y = "";
+        return randomBitString( n, RandomSource.current() );
+    }
+    public static String randomBitString( int n, RandomSource rng )
+    {
+        // building the string y, 64 random bits at a time
+        char[] y = new char[n];
+        long b = 0;
         for (int i = 0; i < n; i++ )
         {
             // get a random bit and append it to y
-            byte b = (byte)Math.round(Math.random());
-            y += b;
+            if ((i & 63) == 0) b = rng.nextLong();
+            y[i] = (b & 1L) == 0 ? '0' : '1';
+            b >>>= 1;
         }
-        return y;
+        return new String(y);
     }
 }
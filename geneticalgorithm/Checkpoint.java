@@ -0,0 +1,292 @@
+//===========================================================
+// title = Checkpoint.java
+// by = Brian Kim
+// description = saves the state of a generation to a compact
+//  binary file and restores it, so a long run can resume
+//  after a crash
+//
+// notes:
+// - file layout (little endian):
+//     header (HEADER_BYTES): magic, version, population size,
+//       n_bits, n_words, count, flags, rng state, rng gamma,
+//       mutation and crossover parameters, elite count,
+//       steady-state size, evaluations, fitness of the most fit
+//     double[population size]          fitness
+//     long[population size * n_words]  packed genomes
+//     long[n_words]                    most fit (if the flag is set)
+// - everything after the header goes through memory-mapped
+//    regions with bulk double/long copies, so the cost is about
+//    that of copying the genomes; with a population store the
+//    whole arena is one copy
+// - restore() fills an existing generation, built the usual way
+//    by its subclass, so chromosomes keep their own class: the
+//    generation is resized if the population size differs, but
+//    n_bits must match; the whole header is checked first, so a
+//    bad or mismatched file throws IOException and leaves the
+//    generation as it was
+// - the fitness function, evaluator and cache are not saved
+//===========================================================
+
+package geneticalgorithm;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class Checkpoint
+{
+    //
+    // properties (instance variables)
+    //
+    public static final int MAGIC = 0x47414350; // "GACP"
+    public static final int VERSION = 2;
+    public static final int HEADER_BYTES = 112;
+
+    // genomes are mapped at most this many bytes at a time
+    private static final long REGION_BYTES = 1L << 28;
+
+    // header flags
+    private static final int RATED = 1, HAS_BEST = 2, BEST_RATED = 4;
+
+    //
+    // important API
+    //
+
+    // writes the state of <gen> to <path>, replacing the file
+    public static void save( Generation gen, Path path ) throws IOException
+    {
+        save( gen, path, false );
+    }
+    
+    // as above; with <sync> the file is also forced to the disk before
+    // returning, so it survives a power failure and not just a crash
+    public static void save( Generation gen, Path path, boolean sync ) throws IOException
+    {
+        Chromosome[] pop = gen.population;
+        int size = gen.population_size;
+        int n_bits = pop[0].n_bits;
+        int n_words = pop[0].n_words;
+        Chromosome best = gen.most_fit != null && gen.most_fit.n_bits == n_bits ? gen.most_fit : null;
+        int flags = (gen.isRated() ? RATED : 0) | (best != null ? HAS_BEST : 0)
+                | (best != null && gen.most_fit_rated ? BEST_RATED : 0);
+
+        long genomes = HEADER_BYTES + 8L * size;
+
+        try (FileChannel ch = FileChannel.open( path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE ))
+        {
+            // header and fitness
+            MappedByteBuffer head = map( ch, FileChannel.MapMode.READ_WRITE, 0, genomes );
+            head.putInt( MAGIC ).putInt( VERSION ).putInt( size ).putInt( n_bits )
+                .putInt( n_words ).putInt( gen.count ).putInt( flags ).putInt( 0 )
+                .putLong( gen.rng.getState() ).putLong( gen.rng.getGamma() )
+                .putDouble( gen.mutation_rate ).putDouble( gen.bit_mutation_rate )
+                .putInt( gen.mutation_volume )
+                .putInt( gen.mutation_mode.ordinal() ).putInt( gen.x_strategy.ordinal() )
+                .putInt( gen.x_pt.ordinal() ).putInt( gen.x_op.ordinal() )
+                .putInt( gen.elite_count ).putInt( gen.steady_state ).putInt( 0 )
+                .putLong( gen.evaluations ).putDouble( gen.most_fit_fitness );
+            head.position( HEADER_BYTES );
+            head.asDoubleBuffer().put( gen.fitness, 0, size );
+
+            // genomes, one region at a time
+            if (gen.store != null)
+                putWords( ch, genomes, gen.store.getGenomes(), 0, size * n_words );
+            else
+            {
+                int per_region = (int)Math.max( 1, REGION_BYTES / (8L * n_words) );
+                for (int i = 0; i < size; i += per_region)
+                {
+                    int n = Math.min( per_region, size - i );
+                    LongBuffer lb = map( ch, FileChannel.MapMode.READ_WRITE,
+                            genomes + 8L * n_words * i, 8L * n_words * n ).asLongBuffer();
+                    for (int j = i; j < i + n; j++)
+                        lb.put( pop[j].words, pop[j].base, n_words );
+                }
+            }
+            if (best != null)
+                putWords( ch, genomes + 8L * n_words * size, best.words, best.base, n_words );
+            if (sync) ch.force( false );
+        }
+    }
+
+    // restores the state saved in <path> into <gen>
+    public static void restore( Generation gen, Path path ) throws IOException
+    {
+        try (FileChannel ch = FileChannel.open( path, StandardOpenOption.READ ))
+        {
+            MappedByteBuffer head = map( ch, FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES );
+            if (head.getInt() != MAGIC) throw new IOException( err_msg() + path + " is not a checkpoint" );
+            int version = head.getInt();
+            if (version != VERSION) throw new IOException( err_msg() + "unsupported version " + version );
+            int size = head.getInt();
+            int n_bits = head.getInt();
+            int n_words = head.getInt();
+            int count = head.getInt();
+            int flags = head.getInt();
+            head.getInt();
+            long state = head.getLong(), gamma = head.getLong();
+            double mutation_rate = head.getDouble(), bit_mutation_rate = head.getDouble();
+            int mutation_volume = head.getInt();
+            int mode = head.getInt(), strategy = head.getInt(), point = head.getInt(), op = head.getInt();
+            int elite_count = head.getInt(), steady_state = head.getInt();
+            head.getInt();
+            long evaluations = head.getLong();
+            double best_fitness = head.getDouble();
+
+            // check the whole header before anything in <gen> changes
+            if (n_bits != gen.population[0].n_bits)
+                throw new IOException( err_msg() + "checkpoint has " + n_bits
+                        + " bit chromosomes, expected " + gen.population[0].n_bits );
+            if (n_words != BitString.wordCount( n_bits ))
+                throw new IOException( err_msg() + n_words + " words cannot hold " + n_bits + " bits" );
+            if (size < 1 || (long)size * n_words > Integer.MAX_VALUE)
+                throw new IOException( err_msg() + "bad population size " + size );
+            if (count < 0) throw new IOException( err_msg() + "bad generation count " + count );
+            if (elite_count < 0) throw new IOException( err_msg() + "bad elite count " + elite_count );
+            if (steady_state < 0) throw new IOException( err_msg() + "bad steady-state size " + steady_state );
+            if (evaluations < 0) throw new IOException( err_msg() + "bad evaluation count " + evaluations );
+            checkOrdinal( "mutation mode", mode, Generation.MutationMode.values().length );
+            checkOrdinal( "crossover strategy", strategy, Generation.CrossoverStrategy.values().length );
+            checkOrdinal( "crossover point", point, Generation.CrossoverPoint.values().length );
+            checkOrdinal( "crossover operator", op, Generation.CrossoverOperator.values().length );
+
+            long genomes = HEADER_BYTES + 8L * size;
+            long length = genomes + 8L * n_words * (size + ((flags & HAS_BEST) != 0 ? 1 : 0));
+            if (ch.size() < length) throw new IOException( err_msg() + path + " is truncated" );
+
+            // fitness
+            double[] fitness = new double[size];
+            DoubleBuffer db = map( ch, FileChannel.MapMode.READ_ONLY, HEADER_BYTES, 8L * size ).asDoubleBuffer();
+            db.get( fitness );
+
+            resize( gen, size );
+
+            // genomes
+            Chromosome[] pop = gen.population;
+            if (gen.store != null)
+            {
+                getWords( ch, genomes, gen.store.getGenomes(), 0, size * n_words );
+                for (int i = 0; i < size; i++)
+                {
+                    pop[i].wordsWritten();
+                    pop[i].finishChild();
+                }
+            }
+            else
+            {
+                int per_region = (int)Math.max( 1, REGION_BYTES / (8L * n_words) );
+                for (int i = 0; i < size; i += per_region)
+                {
+                    int n = Math.min( per_region, size - i );
+                    LongBuffer lb = map( ch, FileChannel.MapMode.READ_ONLY,
+                            genomes + 8L * n_words * i, 8L * n_words * n ).asLongBuffer();
+                    for (int j = i; j < i + n; j++)
+                    {
+                        lb.get( pop[j].words, pop[j].base, n_words );
+                        pop[j].wordsWritten();
+                        pop[j].finishChild();
+                    }
+                }
+            }
+
+            // most fit, kept apart from the population like evolve() does
+            gen.setMostFit( null, 0, false );
+            if ((flags & HAS_BEST) != 0)
+            {
+                Chromosome best = (Chromosome)pop[0].clone();
+                getWords( ch, genomes + 8L * n_words * size, best.words, best.base, n_words );
+                best.wordsWritten();
+                best.finishChild();
+                gen.setMostFit( gen.store != null ? gen.store.keepBest( best ) : best,
+                        best_fitness, (flags & BEST_RATED) != 0 );
+            }
+
+            // the rest of the state
+            gen.fitness = fitness;
+            gen.count = count;
+            gen.evaluations = evaluations;
+            gen.elite_count = elite_count;
+            gen.steady_state = steady_state;
+            gen.diversity.invalidate();
+            gen.rng = new RandomSource( state, gamma );
+            gen.mutation_rate = mutation_rate;
+            gen.bit_mutation_rate = bit_mutation_rate;
+            gen.mutation_volume = mutation_volume;
+            gen.mutation_mode = Generation.MutationMode.values()[mode];
+            gen.x_strategy = Generation.CrossoverStrategy.values()[strategy];
+            gen.x_pt = Generation.CrossoverPoint.values()[point];
+            gen.x_op = Generation.CrossoverOperator.values()[op];
+            gen.setRated( (flags & RATED) != 0 );
+        }
+    }
+
+    //
+    // utility methods
+    //
+
+    // convenience method for error reporting
+    private static String err_msg() {return "error: Checkpoint: ";}
+
+    // throws unless 0 <= <ordinal> < <n>
+    private static void checkOrdinal( String what, int ordinal, int n ) throws IOException
+    {
+        if (ordinal < 0 || ordinal >= n)
+            throw new IOException( err_msg() + "bad " + what + " " + ordinal );
+    }
+
+    // maps <length> bytes at <position> in little endian order
+    private static MappedByteBuffer map( FileChannel ch, FileChannel.MapMode mode,
+            long position, long length ) throws IOException
+    {
+        MappedByteBuffer buf = ch.map( mode, position, length );
+        buf.order( ByteOrder.LITTLE_ENDIAN );
+        return buf;
+    }
+
+    // writes words [from, from+n) of <src> at byte <position>
+    private static void putWords( FileChannel ch, long position, long[] src, int from, int n ) throws IOException
+    {
+        int per_region = (int)(REGION_BYTES / 8);
+        for (int i = 0; i < n; i += per_region)
+        {
+            int len = Math.min( per_region, n - i );
+            map( ch, FileChannel.MapMode.READ_WRITE, position + 8L * i, 8L * len ).asLongBuffer().put( src, from + i, len );
+        }
+    }
+
+    // reads <n> words at byte <position> into <dst> from index <from>
+    private static void getWords( FileChannel ch, long position, long[] dst, int from, int n ) throws IOException
+    {
+        int per_region = (int)(REGION_BYTES / 8);
+        for (int i = 0; i < n; i += per_region)
+        {
+            int len = Math.min( per_region, n - i );
+            map( ch, FileChannel.MapMode.READ_ONLY, position + 8L * i, 8L * len )
+                .asLongBuffer().get( dst, from + i, len );
+        }
+    }
+
+    // makes the population of <gen> hold <size> chromosomes
+    private static void resize( Generation gen, int size )
+    {
+        if (gen.population_size == size) return;
+        boolean stored = gen.store != null;
+        if (stored) gen.setPopulationStore( false );
+
+        Chromosome[] pop = new Chromosome[size];
+        for (int i = 0; i < size; i++)
+        {
+            pop[i] = i < gen.population_size
+                    ? gen.population[i] : (Chromosome)gen.population[0].clone();
+        }
+        gen.population = pop;
+        gen.population_size = size;
+        if (stored) gen.setPopulationStore( true );
+    }
+}
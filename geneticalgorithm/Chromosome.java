@@ -9,7 +9,8 @@
 // - should be subclassed; won't do much as an instance
 //  - override decode() to define the bitstring within the
 //    context of your implementation
-// - crossover() and mutate() should NOT be overriden
+// - crossover*() and mutate() should NOT be overriden
+// - clone() should be overriden to return a copy of the subclass
 // ZZ:
 // - components and decode() represent the same data
 //  - must ensure robustness between the two
@@ -30,18 +31,41 @@ public class Chromosome extends BitString
     // number of components
     protected int size;
     
+    // mutateWordMask() resolves probabilities to 2^-MASK_PRECISION
+    public static final int MASK_PRECISION = 16;
+    
+    // last fitness stored by a FitnessCache, valid until the bits change
+    // (null = none); the fitness and its cache are one immutable object,
+    // so a reader on another thread never sees one without the other
+    protected FitnessCache.Stored cached;
+    
     //
     // constructor methods
     //
+    // random construction from the calling thread's unseeded source
+    // (not reproducible: use Chromosome(int, RandomSource) with the
+    // generation's rng inside initial_population())
     public Chromosome( int n )
     {
     	this( BitString.randomBitString(n) );
     }
+    
+    // random construction from a given random source
+    public Chromosome( int n, RandomSource rng )
+    {
+        this( BitString.randomBitString(n, rng) );
+    }
 
-    // copy constructor
+    // copy constructor: copies the bits word by word and shares 
+    // the (immutable) components instead of decoding them again
     public Chromosome( Chromosome ch )
     {
-        this( ch.toString() );
+        super( (BitString)ch );
+        components = ch.components == null ? null : ch.components.clone();
+        size = ch.size;
+        
+        // an identical copy has an identical fitness
+        cached = ch.cached;
     }
     
     // construction by components
@@ -54,6 +78,14 @@ public class Chromosome extends BitString
         updateBits();
     }
     
+    // construction by a copy of the bits of <bits>, word by word
+    public Chromosome( BitString bits )
+    {
+        super( bits );
+        components = this.decode();
+        size = components == null ? 0 : components.length;
+    }
+    
     // construction by bitstring.
     public Chromosome( String bits )
     {
@@ -105,6 +137,25 @@ public class Chromosome extends BitString
     // convenience method for error reporting
     private static String err_msg() {return "error: Chromosome: ";}
     
+    // copies the bits of <src>, and its cached fitness if it has one
+    @Override
+    public void copyFrom( BitString src )
+    {
+        super.copyFrom( src );
+        if (src instanceof Chromosome && src.n_bits == n_bits)
+        {
+            cached = ((Chromosome)src).cached;
+        }
+    }
+    
+    // any change to the bits invalidates the cached fitness
+    @Override
+    protected void changed()
+    {
+        super.changed();
+        cached = null;
+    }
+    
     // decodes the bitstring into its components
     // should be overriden
     public Encodable[] decode()
@@ -114,6 +165,10 @@ public class Chromosome extends BitString
     
     // flips a <volume> number of bits 
     public void mutate( int volume )
+    {
+        mutate( volume, RandomSource.current() );
+    }
+    public void mutate( int volume, RandomSource rng )
     {
         // make sure the volume is a valid value
         volume = this.cleanMutationVolume(volume);
@@ -126,7 +181,7 @@ public class Chromosome extends BitString
         while( i < volume )
         {
             // get a random index
-            int index = randomIndex();
+            int index = randomIndex(rng);
 
             // has the index already been mutated?
             boolean indexExists = false;
@@ -147,11 +202,121 @@ public class Chromosome extends BitString
         }
     }
     
-    // reproduce with another chromosome <partner>
+    // flips each bit independently with probability <p>
+    // by jumping straight from one flipped bit to the next: the gap 
+    // between flips is geometric, so the cost is proportional to the 
+    // number of flips rather than to n_bits
+    // returns the number of bits flipped
+    public int mutatePerBit( double p, RandomSource rng )
+    {
+        if (!(p > 0)) return 0; // also NaN
+        if (p >= 1)
+        {
+            complementRange( 0, n_bits );
+            return n_bits;
+        }
+        
+        // gap = floor(ln(u) / ln(1-p)), u uniform in (0, 1]
+        // (compared as a double before adding: for tiny p it can be
+        // far past the range of an int or a long)
+        double log_q = Math.log1p( -p );
+        int flips = 0;
+        int i = -1;
+        while (true)
+        {
+            double u = 1.0 - rng.nextDouble();
+            double gap = Math.log( u ) / log_q;
+            if (!(gap < n_bits - 1 - i)) break;
+            i += 1 + (int)gap;
+            xorWord( i >>> 6, 1L << i );
+            flips++;
+        }
+        if (flips > 0) changedHashed();
+        return flips;
+    }
+    
+    // flips each bit independently with probability <p> (rounded to
+    // a multiple of 2^-MASK_PRECISION) by XORing each word with a 
+    // random mask of that density
+    // suited to large p, where mutatePerBit() would flip most words anyway
+    // returns the number of bits flipped
+    public int mutateWordMask( double p, RandomSource rng )
+    {
+        // the binary digits of p, most significant first
+        long digits = (long)Math.rint( Math.min( 1.0, Math.max( 0.0, p ) ) * (1L << MASK_PRECISION) );
+        if (digits == 0) return 0;
+        
+        int flips = 0;
+        for (int w = 0; w < n_words; w++)
+        {
+            long mask;
+            if (digits == 1L << MASK_PRECISION) mask = -1L;
+            else
+            {
+                // combine random words from the least significant digit
+                // of p up: OR for a 1 digit, AND for a 0 digit
+                mask = 0;
+                for (int k = Long.numberOfTrailingZeros( digits ); k < MASK_PRECISION; k++)
+                {
+                    long r = rng.nextLong();
+                    mask = ((digits >>> k) & 1L) != 0 ? (r | mask) : (r & mask);
+                }
+            }
+            if (w == n_words - 1) mask &= lastWordMask( n_bits );
+            xorWord( w, mask );
+            flips += Long.bitCount( mask );
+        }
+        if (flips > 0) changedHashed();
+        return flips;
+    }
+    
+    // reproduce with another chromosome <partner>:
+    //  bits [0, pivot) come from this, [pivot, n_bits) from partner
     public Chromosome crossover( Chromosome partner, int pivot )
+    {
+        Chromosome child = this.childWith( partner );
+        if (child == null) return null;
+        
+        // the child starts as a copy of this, so only the
+        // partner's half needs copying
+        Crossover.singlePoint( child, child, partner, pivot );
+        return child.finishChild();
+    }
+    
+    // two-point crossover: bits [p1, p2) come from partner
+    public Chromosome crossover( Chromosome partner, int p1, int p2 )
+    {
+        Chromosome child = this.childWith( partner );
+        if (child == null) return null;
+        Crossover.twoPoint( child, child, partner, p1, p2 );
+        return child.finishChild();
+    }
+    
+    // uniform crossover: each bit comes from either parent
+    public Chromosome crossoverUniform( Chromosome partner, RandomSource rng )
+    {
+        Chromosome child = this.childWith( partner );
+        if (child == null) return null;
+        Crossover.uniform( child, this, partner, rng );
+        return child.finishChild();
+    }
+    
+    // component-aligned crossover: each component comes whole 
+    // from either parent
+    public Chromosome crossoverComponents( Chromosome partner, RandomSource rng )
+    {
+        Chromosome child = this.childWith( partner );
+        if (child == null) return null;
+        Crossover.segments( child, child, partner, this.componentBounds(), rng );
+        return child.finishChild();
+    }
+    
+    // a copy of this chromosome to be crossed with <partner>
+    // (null if the two can't mate)
+    protected Chromosome childWith( Chromosome partner )
     {
         // make sure classes match between mates
-        if (!this.getClass().equals(partner.getClass()))
+        if (!this.getClass().equals(partner.getClass()) || partner.n_bits != n_bits)
         {
             String msg = err_msg() + "crossover: type mismatch with partner";
             System.err.println(msg);
@@ -159,32 +324,33 @@ public class Chromosome extends BitString
         }
         
         // create a copy of this chromosome
-        Chromosome child = (Chromosome)this.clone();
-        
-        // copy over bits [0, pivot) from this to child
-        // ZZ: this doesn't seem necessary
-        for (int i = 0; i < pivot; i++)
-        {
-            child.setBit(i, this.getBit(i));
-        }
-
-        // copy over bits [pivot, n_bits) from partner to child
-        for (int i = pivot; i < partner.n_bits; i++)
+        return (Chromosome)this.clone();
+    }
+    
+    // update the components of the child with the new bitstring
+    protected Chromosome finishChild()
+    {
+        this.components = this.decode();
+        return this;
+    }
+    
+    // the bit offset at which each component starts
+    public int[] componentBounds()
+    {
+        int n = components == null ? 0 : size;
+        int[] bounds = new int[Math.max( 1, n )];
+        for (int i = 1; i < n; i++)
         {
-            child.setBit(i, partner.getBit(i));
+            bounds[i] = bounds[i-1] + components[i-1].n_bits();
         }
-        
-        // update the components of the child with the new bitstring
-        child.components = (Encodable[])child.decode();
-        
-        return child;
+        return bounds;
     }
     
-    // used for creating a child
+    // used for creating a child: a word-level copy of this
     @Override
     public Object clone()
     {
-        return new Chromosome( components );
+        return new Chromosome( this );
     }
     
     // BitString (gene) concatenation of encodable objects
@@ -192,12 +358,13 @@ public class Chromosome extends BitString
     //     is not stable 
     public void updateBits()
     {
-        String bin = "";
+        // each component writes itself in place, one after another
+        int offset = 0;
         for (int i = 0; i < size; i++)
         {
-            bin += components[i].encode();
+            components[i].encodeInto( this, offset );
+            offset += components[i].n_bits();
         }
-        setBits(bin);
     }
     
     // make sure <v> is a valid value within the range [0, n_bits)
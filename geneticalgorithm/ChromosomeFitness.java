@@ -0,0 +1,47 @@
+//===========================================================
+// title = ChromosomeFitness.java
+// by = Brian Kim
+// description = a typed fitness function that rates a
+//  chromosome of a known class directly
+//
+// notes:
+// - implement rate(C) for your chromosome class; rate(Object)
+//    is provided, so a ChromosomeFitness can be used anywhere
+//    a FitnessFunction is expected
+// - rate(C) should read what it needs straight from the bits
+//    (getBit, readUnsigned, ...) instead of decode()-ing
+// - of() adapts an old-style FitnessFunction; Generation always
+//    rates through this interface
+//===========================================================
+
+package geneticalgorithm;
+
+public interface ChromosomeFitness<C extends Chromosome> extends FitnessFunction
+{
+    // returns a value between 0 and 1
+    public double rate( C chr );
+    
+    @SuppressWarnings("unchecked")
+    @Override
+    public default double rate( Object x )
+    {
+        return rate( (C)x );
+    }
+    
+    // <ff> as a ChromosomeFitness (itself if it already is one)
+    @SuppressWarnings("unchecked")
+    public static ChromosomeFitness<Chromosome> of( final FitnessFunction ff )
+    {
+        if (ff instanceof ChromosomeFitness) return (ChromosomeFitness<Chromosome>)ff;
+        return new ChromosomeFitness<Chromosome>() {
+            @Override
+            public double rate( Chromosome chr ) {
+                return ff.rate( (Object)chr );
+            }
+            @Override
+            public boolean isThreadSafe() {
+                return ff.isThreadSafe();
+            }
+        };
+    }
+}
@@ -0,0 +1,124 @@
+//===========================================================
+// title = ChunkedPoolEvaluator.java
+// by = Brian Kim
+// description = an evaluator that splits the population into
+//  fixed-size chunks and rates them on a fixed thread pool
+//
+// notes:
+// - one task per chunk keeps scheduling overhead low when
+//    each rating is cheap
+// - default chunk size spreads the population over four
+//    chunks per thread
+//===========================================================
+
+package geneticalgorithm;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ChunkedPoolEvaluator implements Evaluator
+{
+    //
+    // properties (instance variables)
+    //
+    protected ExecutorService pool;
+    protected int n_threads;
+    
+    // chromosomes per task (0 = pick from population size)
+    protected int chunk_size;
+    
+    //
+    // constructors
+    //
+    public ChunkedPoolEvaluator()
+    {
+        this( Runtime.getRuntime().availableProcessors() );
+    }
+    
+    public ChunkedPoolEvaluator( int threads )
+    {
+        this( threads, 0 );
+    }
+    
+    public ChunkedPoolEvaluator( int threads, int chunk )
+    {
+        n_threads = Math.max( 1, threads );
+        chunk_size = Math.max( 0, chunk );
+        pool = Executors.newFixedThreadPool( n_threads, runnable -> {
+            Thread t = new Thread( runnable, "ga-evaluator" );
+            t.setDaemon( true );
+            return t;
+        });
+    }
+    
+    //
+    // evaluator interface
+    //
+    @Override
+    public void evaluate( final ChromosomeFitness<Chromosome> ff, final Chromosome[] population, 
+            final double[] fitness, int from, int to )
+    {
+        int n = to - from;
+        if (n <= 0) return;
+        int chunk = chunk_size > 0 ? chunk_size : Math.max( 1, n / (4 * n_threads) );
+        
+        Future<?>[] tasks = new Future<?>[(n + chunk - 1) / chunk];
+        for (int t = 0; t < tasks.length; t++)
+        {
+            final int lo = from + t * chunk;
+            final int hi = Math.min( to, lo + chunk );
+            tasks[t] = pool.submit( () -> {
+                for (int i = lo; i < hi; i++) fitness[i] = ff.rate( population[i] );
+            });
+        }
+        awaitAll( tasks );
+    }
+    
+    // one batch call per chunk
+    @Override
+    public void evaluateBatch( final BatchFitnessFunction ff, final Chromosome[] population,
+            final double[] fitness, int from, int to )
+    {
+        int n = to - from;
+        if (n <= 0) return;
+        int chunk = chunk_size > 0 ? chunk_size : Math.max( 1, n / (4 * n_threads) );
+        
+        Future<?>[] tasks = new Future<?>[(n + chunk - 1) / chunk];
+        for (int t = 0; t < tasks.length; t++)
+        {
+            final int lo = from + t * chunk;
+            final int hi = Math.min( to, lo + chunk );
+            tasks[t] = pool.submit( () -> ff.rate( population, lo, hi, fitness ) );
+        }
+        awaitAll( tasks );
+    }
+    
+    @Override
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+    
+    //
+    // convenience static methods
+    //
+    
+    // waits for every task, rethrowing the first failure
+    static void awaitAll( Future<?>[] tasks )
+    {
+        RuntimeException failure = null;
+        for (int t = 0; t < tasks.length; t++)
+        {
+            try {
+                tasks[t].get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (failure == null) failure = new RuntimeException( "evaluation interrupted", e );
+            } catch (java.util.concurrent.ExecutionException e) {
+                if (failure == null) failure = new RuntimeException( "evaluation failed", e.getCause() );
+            }
+        }
+        if (failure != null) throw failure;
+    }
+}
@@ -0,0 +1,82 @@
+//===========================================================
+// title = Crossover.java
+// by = Brian Kim
+// description = crossover operators that build a child
+//  bitstring out of two parents a word at a time
+//
+// notes:
+// - every operator writes into an existing <child> of the same
+//    size as the parents (usually a copy of one of them)
+// - ranges are copied with BitString.copyRange(), i.e. whole
+//    words through System.arraycopy plus masked edges, so the
+//    cost is proportional to n_bits/64, not n_bits
+// - pivots are clamped to [0, n_bits]
+//===========================================================
+
+package geneticalgorithm;
+
+public class Crossover
+{
+    // child = a[0, pivot) + b[pivot, n)
+    public static void singlePoint( BitString child, BitString a, BitString b, int pivot )
+    {
+        int n = child.n_bits;
+        pivot = clamp( pivot, n );
+        if (child != a) child.copyRange( a, 0, pivot );
+        if (child != b) child.copyRange( b, pivot, n );
+    }
+
+    // child = a[0, p1) + b[p1, p2) + a[p2, n)
+    public static void twoPoint( BitString child, BitString a, BitString b, int p1, int p2 )
+    {
+        int n = child.n_bits;
+        p1 = clamp( p1, n );
+        p2 = clamp( p2, n );
+        if (p1 > p2) { int t = p1; p1 = p2; p2 = t; }
+        if (child != a) child.copyFrom( a );
+        child.copyRange( b, p1, p2 );
+    }
+
+    // each bit comes from a or b with equal probability,
+    // drawn 64 bits at a time as a random mask
+    public static void uniform( BitString child, BitString a, BitString b, RandomSource rng )
+    {
+        for (int w = 0; w < child.n_words; w++)
+        {
+            long mask = rng.nextLong();
+            child.putWord( w, (a.words[a.base + w] & ~mask) 
+                    | (b.words[b.base + w] & mask) );
+        }
+        child.changedHashed();
+    }
+
+    // each segment [bounds[i], bounds[i+1]) comes whole from a or b
+    // with equal probability; bounds must be increasing and start at 0
+    // (e.g. the component boundaries of a chromosome)
+    public static void segments( BitString child, BitString a, BitString b,
+            int[] bounds, RandomSource rng )
+    {
+        int n = child.n_bits;
+        if (child != a) child.copyFrom( a );
+        for (int i = 0; i < bounds.length; i++)
+        {
+            int from = bounds[i];
+            int to = i + 1 < bounds.length ? bounds[i + 1] : n;
+            if (rng.nextBoolean()) child.copyRange( b, from, Math.min( to, n ) );
+        }
+    }
+
+    // a pivot that leaves at least one bit from each parent when possible
+    public static int randomPivot( int n_bits, RandomSource rng )
+    {
+        return n_bits < 2 ? 0 : 1 + rng.nextInt( n_bits - 1 );
+    }
+
+    // make sure <pivot> is within [0, n]
+    public static int clamp( int pivot, int n )
+    {
+        if (pivot < 0) return 0;
+        if (pivot > n) return n;
+        return pivot;
+    }
+}
@@ -0,0 +1,23 @@
+//===========================================================
+// title = Decoder.java
+// by = Brian Kim
+// description = an interface that declares functions for
+//  decoding a sequence of bits back into an Encodable object
+//
+// notes:
+// - the counterpart of Encodable.encodeInto(): decoding reads
+//    directly from an offset of a larger bitstring, so no
+//    intermediate strings or bitstrings are created
+//===========================================================
+
+package geneticalgorithm;
+
+public interface Decoder<T extends Encodable>
+{
+    // rebuilds an object from the n_bits() bits of <source> 
+    // starting at <offset>
+    public T decodeFrom( BitString source, int offset );
+    
+    // number of bits read by decodeFrom()
+    public int n_bits();
+}
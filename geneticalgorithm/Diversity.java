@@ -0,0 +1,189 @@
+//===========================================================
+// title = Diversity.java
+// by = Brian Kim
+// description = measures how diverse a population is: the
+//  frequency of 1 at every locus, the exact mean pairwise
+//  Hamming distance and the allele entropy
+//
+// notes:
+// - everything follows from the column counts c_i (how many
+//    chromosomes have a 1 at locus i): the pairs that differ at
+//    locus i number c_i (n - c_i), so the mean pairwise distance
+//    is sum_i c_i (n - c_i) / (n (n-1) / 2), with no pair ever
+//    compared
+// - the counts are bit-sliced: for each word there is a binary
+//    counter of k = log2(n) words, slice j holding bit j of the
+//    count of each of its 64 loci; adding a chromosome is a
+//    ripple-carry add of its words (2 steps per word amortized),
+//    so one measure() is O(n * n_words + n_bits * log n)
+// - entropy is the mean over loci of the binary entropy of the
+//    frequency, in bits: 0 when the population has converged,
+//    1 when every locus is split half and half
+// - a Diversity reuses its buffers between measurements; see
+//    Generation.getDiversity()
+//===========================================================
+
+package geneticalgorithm;
+
+import java.util.Arrays;
+
+public class Diversity
+{
+    //
+    // properties (instance variables)
+    //
+    protected int generation = -1; // = Generation.getCount() when measured (-1 = never)
+    protected int n;               // = chromosomes measured
+    protected int n_bits;
+    protected int[] ones = new int[0]; // = column counts, ones[i] = c_i
+
+    protected double mean_distance;
+    protected double entropy;
+    protected int fixed; // = loci where every chromosome agrees
+
+    // bit-sliced counters, slice j of word w at slices[j * n_words + w]
+    private long[] slices = new long[0];
+
+    private static String err_msg() { return "error: Diversity: "; }
+
+    //
+    // accessor methods
+    //
+    public int getGeneration() {return generation;}
+    public int getSize() {return n;}
+    public int n_bits() {return n_bits;}
+
+    // number of chromosomes with a 1 at locus i
+    public int getOnes( int i ) {return ones[i];}
+
+    // frequency of the allele 1 at locus i
+    public double getFrequency( int i )
+    {
+        return n == 0 ? 0 : (double)ones[i] / n;
+    }
+
+    // a copy of every frequency
+    public double[] getFrequencies()
+    {
+        double[] p = new double[n_bits];
+        for (int i = 0; i < n_bits; i++) p[i] = getFrequency( i );
+        return p;
+    }
+
+    // exact mean Hamming distance over all pairs of chromosomes
+    public double getMeanDistance() {return mean_distance;}
+
+    // mean pairwise distance divided by n_bits: 0 when every chromosome
+    // is the same, about 0.5 for random bits
+    public double getNormalizedDistance()
+    {
+        return n_bits == 0 ? 0 : mean_distance / n_bits;
+    }
+
+    // mean binary entropy per locus, in bits (0..1)
+    public double getEntropy() {return entropy;}
+
+    // number of loci at which every chromosome has the same bit
+    public int getFixedLoci() {return fixed;}
+
+    // fraction of the loci that are fixed
+    public double getConvergence()
+    {
+        return n_bits == 0 ? 1 : (double)fixed / n_bits;
+    }
+
+    //
+    // important API
+    //
+
+    // measures the first <n> chromosomes of <population>, which must
+    // all have the same size
+    public void measure( Chromosome[] population, int n )
+    {
+        this.generation = -1;
+        this.n = n;
+        this.n_bits = n == 0 ? 0 : population[0].n_bits;
+        int n_words = BitString.wordCount( n_bits );
+        int k = 32 - Integer.numberOfLeadingZeros( Math.max( 1, n ) ); // bits of n
+        if (slices.length < k * n_words) slices = new long[k * n_words];
+        else Arrays.fill( slices, 0, k * n_words, 0L );
+        if (ones.length < n_bits) ones = new int[n_bits];
+        else Arrays.fill( ones, 0, n_bits, 0 );
+
+        // add every chromosome to the counters, 64 loci at a time
+        for (int c = 0; c < n; c++)
+        {
+            BitString chr = population[c];
+            if (chr.n_bits != n_bits) {
+                String err = err_msg() + "measure: chromosome " + c + " has " + chr.n_bits + " bits, not " + n_bits;
+                System.err.println(err);
+                continue;
+            }
+            long[] words = chr.words;
+            for (int w = 0, base = chr.base; w < n_words; w++)
+            {
+                long carry = words[base + w];
+                for (int s = w; carry != 0; s += n_words)
+                {
+                    long t = slices[s] & carry;
+                    slices[s] ^= carry;
+                    carry = t;
+                }
+            }
+        }
+
+        // read the counts out of the slices
+        for (int j = 0; j < k; j++)
+        {
+            for (int w = 0; w < n_words; w++)
+            {
+                for (long s = slices[j * n_words + w]; s != 0; s &= s - 1)
+                {
+                    ones[(w << 6) + Long.numberOfTrailingZeros( s )] += 1 << j;
+                }
+            }
+        }
+
+        // statistics of the counts
+        long differing = 0;
+        double h = 0;
+        int fixed = 0;
+        for (int i = 0; i < n_bits; i++)
+        {
+            int c = ones[i];
+            differing += (long)c * (n - c);
+            if (c == 0 || c == n) fixed++;
+            else
+            {
+                double p = (double)c / n;
+                h -= p * Math.log( p ) + (1 - p) * Math.log( 1 - p );
+            }
+        }
+        this.fixed = fixed;
+        this.mean_distance = n < 2 ? 0 : differing / ((double)n * (n - 1) / 2);
+        this.entropy = n_bits == 0 ? 0 : h / Math.log( 2 ) / n_bits;
+    }
+
+    // measures <gen> as it is now
+    public void measure( Generation gen )
+    {
+        measure( gen.population, gen.population_size );
+        generation = gen.count;
+    }
+
+    // forgets the last measurement
+    public void invalidate()
+    {
+        generation = -1;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder y = new StringBuilder( 96 );
+        y.append( "g" ).append( generation ).append( ": mean distance " ).append( mean_distance )
+         .append( " (" ).append( getNormalizedDistance() ).append( "), entropy " ).append( entropy )
+         .append( ", fixed " ).append( fixed ).append( "/" ).append( n_bits );
+        return y.toString();
+    }
+}
@@ -3,6 +3,12 @@
 // by = Brian Kim
 // description = an interface that declares functions for
 //  encoding some sort of data into a sequence of bits
+//
+// notes:
+// - encodeInto() writes straight into a larger bitstring (e.g.
+//    a chromosome) and should be overriden to avoid the
+//    temporary BitString that encode() allocates
+// - the reverse direction is declared by Decoder
 //===========================================================
 
 package geneticalgorithm;
@@ -11,4 +17,10 @@ public interface Encodable
 {
     public BitString encode();
     public int n_bits();
+    
+    // writes this object's n_bits() bits into <target> starting at <offset>
+    public default void encodeInto( BitString target, int offset )
+    {
+        target.copyRange( encode(), 0, offset, n_bits() );
+    }
 }
@@ -0,0 +1,36 @@
+//===========================================================
+// title = Evaluator.java
+// by = Brian Kim
+// description = an interface that declares how a generation
+//  runs its fitness function over the population
+//
+// notes:
+// - implementations must write fitness[i] = ff.rate(population[i])
+//    for every i in [from, to) and return only once all of
+//    them are written
+// - each index is written by exactly one task, so results do
+//    not depend on scheduling order
+// - Generation only hands an evaluator a fitness function whose
+//    isThreadSafe() is true; otherwise it rates serially
+//===========================================================
+
+package geneticalgorithm;
+
+public interface Evaluator
+{
+    // rates population[from, to) into fitness[from, to)
+    public void evaluate( ChromosomeFitness<Chromosome> ff, Chromosome[] population, 
+            double[] fitness, int from, int to );
+    
+    // rates population[from, to) into fitness[from, to) through a 
+    // batch fitness function; parallel evaluators split the range 
+    // into slices (default: one call on the calling thread)
+    public default void evaluateBatch( BatchFitnessFunction ff, Chromosome[] population,
+            double[] fitness, int from, int to )
+    {
+        ff.rate( population, from, to, fitness );
+    }
+    
+    // releases any threads held by this evaluator
+    public void shutdown();
+}
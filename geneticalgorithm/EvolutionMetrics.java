@@ -0,0 +1,159 @@
+//===========================================================
+// title = EvolutionMetrics.java
+// by = Brian Kim
+// description = what one call to Generation.evolve() cost and
+//  what it produced: phase timings, evaluation throughput,
+//  fitness statistics, diversity and allocations
+//
+// notes:
+// - a generation fills in and publishes two instances in turn
+//    (see MetricsRegistry), so listeners must copy whatever
+//    they want to keep past the next generation
+// - times are in nanoseconds; rate time covers every rate()
+//    since the previous publish, including the one evolve() does
+//    and the children steady-state mode rates; when all rating
+//    happens within evolve(), rate + sort + stats + selection +
+//    crossover + mutation = total
+// - stats time is describe() (fitness statistics and diversity)
+//    plus queueing the generation to the HistoryLog
+// - fitness statistics and diversity describe the population
+//    that was ranked, i.e. the one the new generation was bred from
+// - diversity is the mean pairwise Hamming distance divided by
+//    n_bits (Diversity.getNormalizedDistance()): 0 when every
+//    chromosome is the same, about 0.5 for random bits; it comes
+//    from Generation.getDiversity(), so it is measured once per
+//    generation whoever else reads it
+// - allocated_bytes needs the com.sun.management extension of
+//    ThreadMXBean; it is -1 without it
+//===========================================================
+
+package geneticalgorithm;
+
+import java.lang.management.ManagementFactory;
+
+public class EvolutionMetrics
+{
+    //
+    // properties (instance variables)
+    //
+    protected int generation; // = Generation.getCount() after the evolve()
+
+    // per-phase time
+    protected long rate_nanos, sort_nanos, stats_nanos, selection_nanos, crossover_nanos, mutation_nanos, total_nanos;
+
+    // fitness function calls (cache misses when there is a cache)
+    protected long evaluations;
+
+    // fitness statistics of the ranked population
+    protected double best, mean, std_dev;
+    protected double diversity;
+
+    // chromosome objects created and heap bytes allocated by evolve()
+    protected long allocated_chromosomes;
+    protected long allocated_bytes;
+
+    // per-thread allocation counter (null = not available)
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+    //
+    // accessor methods
+    //
+    public int getGeneration() {return generation;}
+    public long getRateNanos() {return rate_nanos;}
+    public long getSortNanos() {return sort_nanos;}
+    public long getStatsNanos() {return stats_nanos;}
+    public long getSelectionNanos() {return selection_nanos;}
+    public long getCrossoverNanos() {return crossover_nanos;}
+    public long getMutationNanos() {return mutation_nanos;}
+    public long getTotalNanos() {return total_nanos;}
+    public long getEvaluations() {return evaluations;}
+    public double getBest() {return best;}
+    public double getMean() {return mean;}
+    public double getStdDev() {return std_dev;}
+    public double getDiversity() {return diversity;}
+    public long getAllocatedChromosomes() {return allocated_chromosomes;}
+    public long getAllocatedBytes() {return allocated_bytes;}
+
+    // fitness evaluations per second of rating time
+    public double getEvaluationsPerSecond()
+    {
+        return rate_nanos == 0 ? 0 : evaluations * 1e9 / rate_nanos;
+    }
+
+    //
+    // utility methods
+    //
+
+    // clears the counters for the next generation
+    public void reset()
+    {
+        rate_nanos = sort_nanos = stats_nanos = selection_nanos = crossover_nanos = mutation_nanos = total_nanos = 0;
+        evaluations = 0;
+        allocated_chromosomes = 0;
+        allocated_bytes = 0;
+    }
+
+    // fills in the fitness statistics of the first <n> <fitness> values
+    // and the diversity of the population they rate, measured as <d>
+    public void describe( double[] fitness, int n, Diversity d )
+    {
+        double sum = 0, sum_sq = 0, max = Double.NEGATIVE_INFINITY;
+        int rated = 0;
+        for (int i = 0; i < n; i++)
+        {
+            double f = fitness[i];
+            if (f == f)
+            {
+                sum += f;
+                sum_sq += f * f;
+                if (f > max) max = f;
+                rated++;
+            }
+        }
+        this.mean = rated == 0 ? Double.NaN : sum / rated;
+        this.std_dev = rated == 0 ? Double.NaN : Math.sqrt( Math.max( 0, sum_sq / rated - mean * mean ) );
+        this.best = rated == 0 ? Double.NaN : max;
+        this.diversity = d.getNormalizedDistance();
+    }
+
+    // heap bytes allocated so far by the calling thread (-1 = unknown)
+    public static long threadAllocatedBytes()
+    {
+        return THREADS == null ? -1 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    private static com.sun.management.ThreadMXBean threads()
+    {
+        try {
+            java.lang.management.ThreadMXBean t = ManagementFactory.getThreadMXBean();
+            if (t instanceof com.sun.management.ThreadMXBean)
+            {
+                com.sun.management.ThreadMXBean s = (com.sun.management.ThreadMXBean)t;
+                if (s.isThreadAllocatedMemorySupported() && s.isThreadAllocatedMemoryEnabled()) return s;
+            }
+        } catch (Throwable e) {
+            // no management extensions on this runtime
+        }
+        return null;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder y = new StringBuilder( 256 );
+        y.append( "g" ).append( generation )
+         .append( ": best " ).append( best ).append( ", mean " ).append( mean )
+         .append( ", std dev " ).append( std_dev ).append( ", diversity " ).append( diversity )
+         .append( "\n  rate " ).append( rate_nanos / 1000 ).append( " us (" )
+         .append( evaluations ).append( " evals, " ).append( (long)getEvaluationsPerSecond() ).append( "/s)" )
+         .append( ", sort " ).append( sort_nanos / 1000 ).append( " us" )
+         .append( ", stats " ).append( stats_nanos / 1000 ).append( " us" )
+         .append( ", selection " ).append( selection_nanos / 1000 ).append( " us" )
+         .append( ", crossover " ).append( crossover_nanos / 1000 ).append( " us" )
+         .append( ", mutation " ).append( mutation_nanos / 1000 ).append( " us" )
+         .append( ", total " ).append( total_nanos / 1000 ).append( " us" )
+         .append( "\n  allocated " ).append( allocated_chromosomes ).append( " chromosomes, " )
+         .append( allocated_bytes ).append( " bytes" );
+        return y.toString();
+    }
+}
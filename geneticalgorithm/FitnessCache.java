@@ -0,0 +1,279 @@
+//===========================================================
+// title = FitnessCache.java
+// by = Brian Kim
+// description = a class that remembers fitness values so that
+//  chromosomes which have not changed are not rated again
+//
+// notes:
+// - first level: every chromosome carries the fitness last
+//    stored for it; any change to its bits (mutate, setBit,
+//    crossover, ...) clears it through BitString.changed()
+// - second level (optional): a bounded LRU map from chromosome
+//    content to fitness, which also catches duplicates that are
+//    separate objects (e.g. two identical children)
+// - only valid for deterministic fitness functions: a cache is
+//    tied to one fitness function, so use one cache per function;
+//    a Generation has none until setFitnessCache() is called
+// - a chromosome's stored fitness is replaced as a whole, so
+//    parallel evaluators may store into the same chromosome
+// - hit/miss counters are kept for both levels together
+//===========================================================
+
+package geneticalgorithm;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+public class FitnessCache
+{
+    //
+    // properties (instance variables)
+    //
+    
+    // content -> fitness, in least recently used order (null = disabled)
+    protected LinkedHashMap<Key, Double> lru;
+    protected int capacity;
+    
+    // counters
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    
+    //
+    // constructors
+    //
+    
+    // per-chromosome caching only
+    public FitnessCache()
+    {
+        this( 0 );
+    }
+    
+    // per-chromosome caching plus an LRU of up to <capacity> genomes
+    public FitnessCache( int capacity )
+    {
+        this.capacity = Math.max( 0, capacity );
+        if (this.capacity > 0)
+        {
+            final int cap = this.capacity;
+            lru = new LinkedHashMap<Key, Double>( 16, 0.75f, true ) {
+                private static final long serialVersionUID = 1L;
+                @Override
+                protected boolean removeEldestEntry( Map.Entry<Key, Double> eldest ) {
+                    return size() > cap;
+                }
+            };
+        }
+    }
+    
+    //
+    // accessor methods
+    //
+    public long getHits() {return hits.sum();}
+    public long getMisses() {return misses.sum();}
+    public int getCapacity() {return capacity;}
+    
+    // fraction of lookups answered without calling the fitness function
+    public double getHitRate()
+    {
+        long h = hits.sum(), m = misses.sum();
+        return h + m == 0 ? 0 : (double)h / (h + m);
+    }
+    
+    public void resetCounters()
+    {
+        hits.reset();
+        misses.reset();
+    }
+    
+    // forgets every stored fitness
+    public void clear()
+    {
+        if (lru != null) synchronized (lru) { lru.clear(); }
+    }
+    
+    //
+    // important API
+    //
+    
+    // returns the fitness of <chr>, calling ff only on a miss
+    public double rate( ChromosomeFitness<Chromosome> ff, Chromosome chr )
+    {
+        // first level: unchanged since it was last rated
+        Stored c = chr.cached;
+        if (c != null && c.by == this)
+        {
+            hits.increment();
+            return c.fitness;
+        }
+        
+        // second level: same content seen recently
+        Key key = null;
+        if (lru != null)
+        {
+            key = new Key( chr );
+            Double f;
+            synchronized (lru) { f = lru.get( key ); }
+            if (f != null)
+            {
+                hits.increment();
+                store( chr, f );
+                return f;
+            }
+        }
+        
+        misses.increment();
+        double f = ff.rate( chr );
+        store( chr, f );
+        if (key != null) synchronized (lru) { lru.put( key, f ); }
+        return f;
+    }
+    
+    // a fitness function that rates through this cache
+    public ChromosomeFitness<Chromosome> wrap( FitnessFunction f )
+    {
+        final ChromosomeFitness<Chromosome> ff = ChromosomeFitness.of( f );
+        return new ChromosomeFitness<Chromosome>() {
+            @Override
+            public double rate( Chromosome chr ) {
+                return FitnessCache.this.rate( ff, chr );
+            }
+            @Override
+            public boolean isThreadSafe() {
+                return ff.isThreadSafe();
+            }
+        };
+    }
+    
+    // rates population[from, to) into fitness[from, to), passing only
+    // the chromosomes that miss the cache to the batch function
+    public void rate( BatchFitnessFunction ff, Chromosome[] population, 
+            int from, int to, double[] fitness )
+    {
+        // fill in the hits, gather the misses
+        Chromosome[] missed = null;
+        int[] missed_i = null;
+        Key[] missed_key = null;
+        int n_missed = 0;
+        for (int i = from; i < to; i++)
+        {
+            Chromosome chr = population[i];
+            Stored c = chr.cached;
+            if (c != null && c.by == this)
+            {
+                hits.increment();
+                fitness[i] = c.fitness;
+                continue;
+            }
+            Key key = null;
+            if (lru != null)
+            {
+                key = new Key( chr );
+                Double f;
+                synchronized (lru) { f = lru.get( key ); }
+                if (f != null)
+                {
+                    hits.increment();
+                    store( chr, f );
+                    fitness[i] = f;
+                    continue;
+                }
+            }
+            if (missed == null)
+            {
+                missed = new Chromosome[to - i];
+                missed_i = new int[to - i];
+                if (lru != null) missed_key = new Key[to - i];
+            }
+            missed[n_missed] = chr;
+            missed_i[n_missed] = i;
+            if (key != null) missed_key[n_missed] = key;
+            n_missed++;
+        }
+        if (n_missed == 0) return;
+        
+        // one batch call for all the misses
+        misses.add( n_missed );
+        double[] rated = new double[n_missed];
+        ff.rate( missed, 0, n_missed, rated );
+        for (int k = 0; k < n_missed; k++)
+        {
+            fitness[missed_i[k]] = rated[k];
+            store( missed[k], rated[k] );
+            if (missed_key != null) synchronized (lru) { lru.put( missed_key[k], rated[k] ); }
+        }
+    }
+    
+    // a batch fitness function that rates through this cache
+    public BatchFitnessFunction wrap( final BatchFitnessFunction ff )
+    {
+        return new BatchFitnessFunction() {
+            @Override
+            public void rate( Chromosome[] population, int from, int to, double[] fitness ) {
+                FitnessCache.this.rate( ff, population, from, to, fitness );
+            }
+            @Override
+            public double rate( Object x ) {
+                return FitnessCache.this.rate( ChromosomeFitness.of( ff ), (Chromosome)x );
+            }
+            @Override
+            public boolean isThreadSafe() {
+                return ff.isThreadSafe();
+            }
+        };
+    }
+    
+    //
+    // utility methods
+    //
+    
+    private void store( Chromosome chr, double f )
+    {
+        chr.cached = new Stored( this, f );
+    }
+    
+    // a fitness and the cache that stored it, published as one object:
+    // the legacy loop can put one chromosome in several slots, so two
+    // evaluator threads may store into it at once, and whichever store
+    // a reader sees is whole (final fields)
+    protected static final class Stored
+    {
+        final FitnessCache by;
+        final double fitness;
+        
+        Stored( FitnessCache by, double fitness )
+        {
+            this.by = by;
+            this.fitness = fitness;
+        }
+    }
+    
+    // an immutable snapshot of a genome's words, hashed with
+    // BitString.hash64() (kept up to date as the genome changes)
+    protected static class Key
+    {
+        private final long[] words;
+        private final long hash;
+        
+        Key( BitString chr )
+        {
+            words = chr.getWords();
+            hash = chr.hash64();
+        }
+        
+        @Override
+        public int hashCode()
+        {
+            return (int)(hash ^ (hash >>> 32));
+        }
+        
+        @Override
+        public boolean equals( Object obj )
+        {
+            if (!(obj instanceof Key)) return false;
+            Key k = (Key)obj;
+            return k.hash == hash && Arrays.equals( words, k.words );
+        }
+    }
+}
@@ -10,4 +10,9 @@ public interface FitnessFunction {
 
     // returns a value between 0 and 1
     public double rate( Object x );
+    
+    // whether rate() may be called from several threads at once
+    // override to return true to allow parallel evaluation
+    // (default: false, i.e. always rated on the calling thread)
+    public default boolean isThreadSafe() { return false; }
 }
@@ -0,0 +1,77 @@
+//===========================================================
+// title = ForkJoinEvaluator.java
+// by = Brian Kim
+// description = an evaluator that rates the population as a
+//  parallel stream on a fork/join pool
+//
+// notes:
+// - suited to CPU-bound fitness functions
+// - uses the common pool unless a pool is given
+//===========================================================
+
+package geneticalgorithm;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+public class ForkJoinEvaluator implements Evaluator
+{
+    //
+    // properties (instance variables)
+    //
+    
+    // pool that runs the stream (null = common pool)
+    protected ForkJoinPool pool;
+    
+    //
+    // constructors
+    //
+    public ForkJoinEvaluator()
+    {
+        this( null );
+    }
+    
+    public ForkJoinEvaluator( ForkJoinPool pool )
+    {
+        this.pool = pool;
+    }
+    
+    //
+    // evaluator interface
+    //
+    @Override
+    public void evaluate( final ChromosomeFitness<Chromosome> ff, final Chromosome[] population, 
+            final double[] fitness, final int from, final int to )
+    {
+        Runnable task = () -> IntStream.range( from, to ).parallel()
+                .forEach( i -> fitness[i] = ff.rate( population[i] ) );
+        
+        // a stream started inside a pool runs in that pool
+        if (pool == null) task.run();
+        else pool.submit( task ).join();
+    }
+    
+    // one batch call per slice, about four slices per worker
+    @Override
+    public void evaluateBatch( final BatchFitnessFunction ff, final Chromosome[] population,
+            final double[] fitness, final int from, final int to )
+    {
+        int parallelism = pool == null ? ForkJoinPool.getCommonPoolParallelism() : pool.getParallelism();
+        final int chunk = Math.max( 1, (to - from) / (4 * Math.max( 1, parallelism )) );
+        final int n_chunks = (to - from + chunk - 1) / chunk;
+        Runnable task = () -> IntStream.range( 0, n_chunks ).parallel()
+                .forEach( c -> {
+                    int lo = from + c * chunk;
+                    ff.rate( population, lo, Math.min( to, lo + chunk ), fitness );
+                });
+        
+        if (pool == null) task.run();
+        else pool.submit( task ).join();
+    }
+    
+    @Override
+    public void shutdown()
+    {
+        if (pool != null) pool.shutdown();
+    }
+}
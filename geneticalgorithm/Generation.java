@@ -8,8 +8,6 @@
 
 package geneticalgorithm;
 
-import java.util.Random;
-
 public abstract class Generation // abbreviation: gen, plural: gens
 {
 	// 
@@ -30,6 +28,21 @@ public abstract class Generation // abbreviation: gen, plural: gens
     	Random
     }
     
+    // mutation mode options
+    public static enum MutationMode {
+    	FixedVolume, // with probability mutation_rate, flip mutation_volume bits
+    	PerBit,      // flip every bit with probability bit_mutation_rate (geometric skips)
+    	WordMask     // same as PerBit, via random masks a word at a time
+    }
+    
+    // crossover operator options
+    public static enum CrossoverOperator {
+    	SinglePoint, // split at the crossover point
+    	TwoPoint,    // swap in a random middle section
+    	Uniform,     // every bit from either parent
+    	Segment      // every component from either parent
+    }
+    
     // 
     // properties (instance variables)
     //
@@ -40,6 +53,9 @@ public abstract class Generation // abbreviation: gen, plural: gens
     // a counter for each evolution
     protected int count = 0;
     
+    // fitness function calls so far (cache hits don't count)
+    protected long evaluations = 0;
+    
     // States
     public enum GenerationState {
       Init,
@@ -49,17 +65,26 @@ public abstract class Generation // abbreviation: gen, plural: gens
     
     // fitness value array for the gen
     protected double[] fitness; // of the current gen
-    protected double[][] fitnessHistory; // ZZ: remember previous fitnesses
     
     // chromosome array represents the population
     protected Chromosome[] population; // of the current gen
-    protected Chromosome[][] populationHistory; // ZZ: recall previous gens
+    
+    // previous gens are streamed to disk here (null = not kept)
+    protected HistoryLog history;
     
     // the fitness fn that will rate the chromosomes to evaluate their fitnesses
     // must be set in a subclass constructor
     protected FitnessFunction ff;
     private boolean did_rate = false;
     
+    // skips re-rating chromosomes that have not changed
+    // (default: null = off; only for deterministic fitness functions)
+    protected FitnessCache fitness_cache;
+    
+    // runs ff over the population (default: serially)
+    // only used when ff declares itself thread-safe
+    protected Evaluator evaluator = new SerialEvaluator();
+    
     // population size (default: 8)
     protected int population_size;
     
@@ -70,6 +95,15 @@ public abstract class Generation // abbreviation: gen, plural: gens
     // number of bits that will mutate
     // (default: 1)
     protected int mutation_volume;
+    
+    // how chromosomes are mutated
+    // (default: FixedVolume)
+    protected MutationMode mutation_mode = MutationMode.FixedVolume;
+    
+    // probability that a single bit will flip in the PerBit 
+    // and WordMask modes: [0, 1]
+    // (default: 0.001)
+    protected double bit_mutation_rate = 0.001;
 
     // crossover strategy
     // (default: Parent1Hi_Parent2Lo)
@@ -79,8 +113,56 @@ public abstract class Generation // abbreviation: gen, plural: gens
     // (default: Random)
     protected CrossoverPoint x_pt;
     
-    // reference to the most fit chromosome
+    // crossover operator
+    // (default: SinglePoint)
+    protected CrossoverOperator x_op = CrossoverOperator.SinglePoint;
+    
+    // reference to the most fit chromosome, and its fitness when known
     protected Chromosome most_fit;
+    protected double most_fit_fitness;
+    protected boolean most_fit_rated = false;
+    
+    // source of every random decision made by this generation
+    // (seed it for reproducible runs)
+    protected RandomSource rng;
+    
+    // contiguous genome storage (null = one object per chromosome)
+    protected PopulationStore store;
+    
+    // reusable ranking buffers for evolve()
+    protected Ranking ranking = new Ranking();
+    
+    // how parents are picked (null = the original loop of evolve())
+    // (default: null)
+    protected SelectionStrategy selection;
+    
+    // what selection sees in place of the fitness (null = the fitness)
+    // (default: none)
+    protected NichingStrategy niching;
+    private double[] niched_fitness;
+    private Ranking niched_ranking = new Ranking();
+    
+    // number of most fit chromosomes carried over unmutated
+    // (default: 0)
+    protected int elite_count = 0;
+    
+    // children bred per evolve() in steady-state mode, replacing the 
+    // least fit in place; the most fit always stays, so at most n - 1
+    // (0 = generational, the default)
+    protected int steady_state = 0;
+    protected SelectionStrategy parent_selection; // = binary tournament, see parentSelection()
+    private Chromosome[] children;
+    private double[] children_fitness;
+    
+    // listeners for the metrics of each evolve(); nothing is measured
+    // while there are none
+    protected MetricsRegistry metrics = new MetricsRegistry();
+    protected EvolutionMetrics last_metrics = new EvolutionMetrics();    // = last published
+    protected EvolutionMetrics pending_metrics = new EvolutionMetrics(); // = being measured
+    
+    // allele frequencies, pairwise distance and entropy of the
+    // population, measured at most once per generation
+    protected Diversity diversity = new Diversity();
     
     //
     // accessor methods
@@ -89,6 +171,7 @@ public abstract class Generation // abbreviation: gen, plural: gens
     // once init, a generation should not let outside forces just set its
     // population
     public int getCount() {return count;}
+    public long getEvaluations() {return evaluations;}
     public Chromosome[] getPopulation() {return this.population;}
     public int getPopulationSize() {return this.population_size;}
     
@@ -113,6 +196,11 @@ public abstract class Generation // abbreviation: gen, plural: gens
      fitness function values */
     public double[] getFitness() {return this.fitness;}
     
+    /*
+     whether the fitness values belong to the current population */
+    public boolean isRated() {return did_rate;}
+    protected void setRated( boolean rated ) { did_rate = rated; }
+    
     /*
      mutation probability */
     public double getMutationRate() {return mutation_rate;}
@@ -123,14 +211,119 @@ public abstract class Generation // abbreviation: gen, plural: gens
     public int getMutationVolume() {return mutation_volume;}
     public void setMutationVolume( int n ) { mutation_volume = n; }
     
+    /*
+     mutation mode and per-bit probability */
+    public MutationMode getMutationMode() {return mutation_mode;}
+    public void setMutationMode( MutationMode mode ) { mutation_mode = mode; }
+    public double getBitMutationRate() {return bit_mutation_rate;}
+    public void setBitMutationRate( double rate ) { bit_mutation_rate = cleanMutationRate(rate); }
+    
+    /*
+     crossover options */
+    public CrossoverStrategy getCrossoverStrategy() {return x_strategy;}
+    public void setCrossoverStrategy( CrossoverStrategy s ) { x_strategy = s; }
+    public CrossoverPoint getCrossoverPoint() {return x_pt;}
+    public void setCrossoverPoint( CrossoverPoint p ) { x_pt = p; }
+    public CrossoverOperator getCrossoverOperator() {return x_op;}
+    public void setCrossoverOperator( CrossoverOperator op ) { x_op = op; }
+    
+    /*
+     selection strategy (see Selection; null = the original loop of evolve()) */
+    public SelectionStrategy getSelection() {return selection;}
+    public void setSelection( SelectionStrategy s ) { selection = s; }
+    public boolean usesLegacySelection() {return selection == null;}
+    public NichingStrategy getNiching() {return niching;}
+    public void setNiching( NichingStrategy n ) { niching = n; }
+    
+    /*
+     elitism and steady-state replacement */
+    public int getEliteCount() {return elite_count;}
+    public void setEliteCount( int n ) { elite_count = Math.max(0, n); }
+    public int getSteadyState() {return steady_state;}
+    public void setSteadyState( int k ) { steady_state = Math.max(0, k); }
+    
+    /*
+     random number generation */
+    public RandomSource getRandom() {return rng;}
+    public void setRandom( RandomSource r ) { rng = r; }
+    public void setSeed( long seed ) { rng = new RandomSource(seed); }
+    
+    /*
+     fitness evaluation strategy */
+    public Evaluator getEvaluator() {return evaluator;}
+    public void setEvaluator( Evaluator e ) { evaluator = e == null ? new SerialEvaluator() : e; }
+    
     /* 
      get most fit chromosome */
     public Chromosome getMostFit() {return most_fit;}
-    public double rateMostFit() {return ff.rate(most_fit);}
+    
+    /*
+     fitness of the most fit chromosome: known from rating the population,
+     or else rated now (counted in getEvaluations()) */
+    public double getMostFitFitness()
+    {
+        if (!most_fit_rated) setMostFit(most_fit, rateMostFit(), true);
+        return most_fit_fitness;
+    }
+    
+    /*
+     rates the most fit chromosome again (counted in getEvaluations()) */
+    public double rateMostFit()
+    {
+        double[] y = new double[1];
+        this.rate(new Chromosome[] {most_fit}, y, 1);
+        return y[0];
+    }
+    
+    /*
+     fitness caching (set to null for non-deterministic fitness functions) */
+    public FitnessCache getFitnessCache() {return fitness_cache;}
+    public void setFitnessCache( FitnessCache cache ) { fitness_cache = cache; }
+    
+    /*
+     history of every evolved gen (close the log when done) */
+    public HistoryLog getHistory() {return history;}
+    public void setHistory( HistoryLog log ) { history = log; }
+    
+    /*
+     metrics of each evolve() (see EvolutionMetrics) */
+    public MetricsRegistry getMetricsRegistry() {return metrics;}
+    public void addMetricsListener( MetricsListener l ) { metrics.add(l); }
+    public void removeMetricsListener( MetricsListener l ) { metrics.remove(l); }
+    public EvolutionMetrics getMetrics() {return last_metrics;}
+    
+    /*
+     diversity of the current population (see Diversity), measured on the
+     first call in each generation: O(n * n_words) */
+    public Diversity getDiversity()
+    {
+        if (diversity.getGeneration() != count && population != null) diversity.measure(this);
+        return diversity;
+    }
     
     /*
      get any chromosome */
     public Chromosome getChromosomeAtIndex(int i) {return this.population[i];}
+    
+    /*
+     population store: with it, all genomes live in two shared arenas and
+     the chromosomes above are views that are overwritten two generations
+     later (clone() one to keep it) */
+    public boolean usesPopulationStore() {return store != null;}
+    public PopulationStore getPopulationStore() {return store;}
+    public void setPopulationStore( boolean on )
+    {
+        if (on && this.store == null)
+        {
+            this.store = new PopulationStore(this.population);
+            this.population = this.store.current();
+        }
+        else if (!on && this.store != null)
+        {
+            this.population = this.store.detach();
+            this.store = null;
+        }
+    }
 
     
     //
@@ -170,11 +363,28 @@ public abstract class Generation // abbreviation: gen, plural: gens
     }
     public Generation( int pop, double mut_rate, int mut_vol, 
     		CrossoverStrategy x_strategy, CrossoverPoint x_pt )
+    {
+        this( pop, mut_rate, mut_vol, x_strategy, x_pt, new RandomSource() );
+    }
+    // seeding here also makes initial_population() reproducible, as long
+    // as it draws from this.rng (e.g. Chromosome(int, RandomSource) or
+    // randomPopulation(int, int, RandomSource)); Chromosome(int) and
+    // randomPopulation(int, int) use the unseeded RandomSource.current()
+    public Generation( int pop, double mut_rate, int mut_vol, 
+    		CrossoverStrategy x_strategy, CrossoverPoint x_pt, long seed )
+    {
+        this( pop, mut_rate, mut_vol, x_strategy, x_pt, new RandomSource(seed) );
+    }
+    public Generation( int pop, double mut_rate, int mut_vol, 
+    		CrossoverStrategy x_strategy, CrossoverPoint x_pt, RandomSource rng )
     {
         // assignment of properties
+        this.rng = rng;
         this.population_size = pop;
         this.mutation_rate = mut_rate;
         this.mutation_volume = mut_vol;
+        this.x_strategy = x_strategy;
+        this.x_pt = x_pt;
         
         // init population data and call the rest in its subclass
         this.fitness = new double[pop];
@@ -189,38 +399,178 @@ public abstract class Generation // abbreviation: gen, plural: gens
     // primary function to rate a population
     public double[] rate()
     {
-        // iterate through population and rate each chromosome
-        for (int i=0; i<this.population_size; i++)
-        {
-        	Chromosome chr = this.population[i];
-            this.fitness[i] = this.ff.rate( chr );
-        }
+        this.rate(this.population, this.fitness, this.population_size);
+        
         // toggle the bool
         this.did_rate = true;
         
         return this.fitness;
     }
     
+    // rates the first <n> chromosomes of <chrs> into <out>, counting the
+    // fitness function calls, and timing it when metrics are on
+    protected void rate( Chromosome[] chrs, double[] out, int n )
+    {
+        long misses = this.fitness_cache == null ? 0 : this.fitness_cache.getMisses();
+        long t0 = this.metrics.isEmpty() ? 0 : System.nanoTime();
+        this.rateAll(chrs, out, n);
+        long calls = this.fitness_cache == null ? n : this.fitness_cache.getMisses() - misses;
+        this.evaluations += calls;
+        if (!this.metrics.isEmpty())
+        {
+            this.pending_metrics.rate_nanos += System.nanoTime() - t0;
+            this.pending_metrics.evaluations += calls;
+        }
+    }
+    
+    // rates the first <n> chromosomes of <chrs> into <out>
+    private void rateAll( Chromosome[] chrs, double[] out, int n )
+    {
+        // batch fitness functions rate whole slices at once
+        if (this.ff instanceof BatchFitnessFunction)
+        {
+            BatchFitnessFunction b = (BatchFitnessFunction)this.ff;
+            if (this.fitness_cache != null) b = this.fitness_cache.wrap( b );
+            if (b.isThreadSafe())
+                this.evaluator.evaluateBatch( b, chrs, out, 0, n );
+            else
+                b.rate( chrs, 0, n, out );
+            return;
+        }
+        
+        // rate each chromosome, in parallel if ff allows it
+        ChromosomeFitness<Chromosome> f = this.rater();
+        if (f.isThreadSafe())
+            this.evaluator.evaluate( f, chrs, out, 0, n );
+        else
+        {
+            for (int i=0; i<n; i++)
+            {
+                Chromosome chr = chrs[i];
+                out[i] = f.rate( chr );
+            }
+        }
+    }
+    
     // primary function for evolving a population
     public int evolve()
     {
-        // var decls: ijk for indexing, chr for dummy chromosome pointer
-        //            indicies for holding a sorted array of indicies in the generation
-        int i=0,j=0,k=0;
+        // var decls: indicies for holding a sorted array of indicies in the generation
         int[] indicies;
         
-        Chromosome[] new_population = new Chromosome[this.population_size];
+        // metrics are only measured when someone listens
+        EvolutionMetrics m = this.metrics.isEmpty() ? null : this.pending_metrics;
+        long t_start = 0, bytes_start = 0, t_loop = 0, t = 0, rate_loop = 0;
+        if (m != null) {
+            t_start = System.nanoTime();
+            bytes_start = EvolutionMetrics.threadAllocatedBytes();
+        }
         
         // rate the chromosomes if they weren't rated
         if (!this.did_rate) this.rate();
         
-        // a pretty expensive sorting routine
-        indicies = sort(this.fitness);
+        // rank the population, most fit first
+        if (m != null) t = System.nanoTime();
+        indicies = this.ranking.rank(this.fitness);
+        if (m != null) {
+            long now = System.nanoTime();
+            m.sort_nanos = now - t;
+            t = now;
+            m.describe(this.fitness, this.population_size, this.getDiversity());
+        }
+        if (this.history != null)
+            this.history.record(this.count, this.population, this.fitness, indicies);
+        
+        if (m != null) {
+            t_loop = System.nanoTime();
+            m.stats_nanos = t_loop - t;
+            rate_loop = m.rate_nanos;
+        }
+        
+        // selection sees the niched fitness, if any, and its own ranking
+        double[] sel_fitness = this.fitness;
+        int[] order = indicies;
+        if (this.niching != null)
+        {
+            if (this.niched_fitness == null || this.niched_fitness.length != this.population_size)
+                this.niched_fitness = new double[this.population_size];
+            this.niching.apply(this.population, this.fitness, indicies, this.population_size,
+                    this.niched_fitness, this.rng);
+            sel_fitness = this.niched_fitness;
+            order = this.niched_ranking.rank(sel_fitness);
+        }
+        
+        if (this.steady_state > 0)
+        {
+            // replace only the worst few, in place
+            this.replaceWorst(indicies, order, sel_fitness, m);
+            this.count++;
+        }
+        else
+        {
+            // build the next generation, elites first
+            Chromosome[] new_population = this.store == null 
+                    ? new Chromosome[this.population_size] : this.store.next();
+            boolean legacy = this.selection == null;
+            int from = this.keepElite(new_population, indicies, legacy);
+            if (legacy)
+                this.breedLegacy(new_population, order, sel_fitness, from, m);
+            else
+                this.breedSelected(new_population, order, sel_fitness, from, m);
+            
+            // an elite is the most fit, unmutated; without one the
+            // legacy loop may have mutated the most fit in place (unless
+            // the store kept it apart), so its fitness is no longer known
+            Chromosome best = from > 0 ? new_population[0] : this.population[indicies[0]];
+            if (this.store != null) best = this.store.keepBest(best);
+            this.setMostFit(best, this.fitness[indicies[0]], from > 0 || !legacy || this.store != null);
+            
+            // evolve the generation
+            // Chromosome[] old = this.population.clone();
+            this.population = new_population;
+            if (this.store != null) this.store.swap();
+            this.count++;
+            
+            // the next generation has not been rated yet...
+            this.did_rate = false;
+        }
+        
+        if (m != null) this.publishMetrics(m, t_start, t_loop, rate_loop, bytes_start);
+        
+        return this.count;
+    }
+    
+    // puts the <elite_count> most fit chromosomes, unmutated, into the 
+    // first slots of <new_population>; with <copy> they are copies that
+    // the legacy loop can't mutate in place
+    // returns the number of slots filled
+    protected int keepElite( Chromosome[] new_population, int[] indicies, boolean copy )
+    {
+        int e = Math.min(this.elite_count, this.population_size);
+        for (int i = 0; i < e; i++)
+        {
+            Chromosome chr = this.population[indicies[i]];
+            if (this.store == null && copy) new_population[i] = (Chromosome)chr.clone();
+            else this.keep(new_population, i, chr);
+        }
+        return e;
+    }
+    
+    // the original selection loop (no selection strategy), filling 
+    // <new_population> from slot <from> on, going through <indicies>
+    // ranked by <sel_fitness>
+    // <m> collects the crossover and mutation times when it isn't null
+    protected void breedLegacy( Chromosome[] new_population, int[] indicies, double[] sel_fitness,
+            int from, EvolutionMetrics m )
+    {
+        // var decls: ijk for indexing, t for timing
+        int i=0,j=0,k=0;
+        long t = 0;
         
         // likewise, a pretty expensive loop that generates a whole new 
         // generation
         // for each index in the sorted array of indicies
-        for (i=0, j=0; i < this.population_size; j++)
+        for (i=from, j=0; i < this.population_size; j++)
         {
             // get the next best chromosome
             // ZZ: never used...double next_fit = this.fitness[indicies[j]]; // used for later 
@@ -228,132 +578,373 @@ public abstract class Generation // abbreviation: gen, plural: gens
 
             // try to mutate next and allow into next generation
             // allow next to pass onto the next generation
+            next = this.keep(new_population, i++, next);
+            if (m != null) t = System.nanoTime();
             this.mutate(next);
-            new_population[i++] = next;
+            if (m != null) m.mutation_nanos += System.nanoTime() - t;
 
             // for each successive chromosome in the fitness queue
             for (k=j+1; k<indicies.length && i < population_size; k++)
             {
                 // calculation variables
                 double worse_fit, prob;
-                worse_fit = fitness[k];
+                worse_fit = sel_fitness[k];
 
                 // caluclate probability
                 prob = worse_fit;
 
                 // the selection test pass condition
-                if (Math.random() < prob)
+                if (this.rng.nextDouble() < prob)
                 {
                     // since it passed, it gets to preserve itself 
                     // into the next generation
                     Chromosome worse = this.population[indicies[k]];
                     
-                    worse.mutate(mutation_volume);
-                    new_population[i++] = worse;
+                    worse = this.keep(new_population, i++, worse);
+                    if (m != null) t = System.nanoTime();
+                    this.applyMutation(worse);
+                    if (m != null) m.mutation_nanos += System.nanoTime() - t;
                     
                     if (i < population_size)
                     {
-                    	Random rng = new Random();
-                    	// determine crossover pivot point
-                    	int pivot = this.population[0].n_bits / 2;
-                    	if (this.x_pt == CrossoverPoint.Random)
-                    		pivot = rng.nextInt();
-                    	else if (this.x_pt == CrossoverPoint.A_BC)
-                    		pivot = this.population[0].components[0].n_bits();
-                    	else if (this.x_pt == CrossoverPoint.AB_C)
-                    		pivot = this.population[0].n_bits - this.population[0].components[0].n_bits();
-                    	// determine crossover strategy
-                        if (this.x_strategy == CrossoverStrategy.Parent1Hi_Parent2Lo)
-                            new_population[i++] = next.crossover(worse,pivot);
-                        else if (this.x_strategy == CrossoverStrategy.Parent2Hi_Parent1Lo)
-                            new_population[i++] = worse.crossover(next,pivot);
-                        else
-                        	new_population[i++] = rng.nextDouble() > 0.5 ? next.crossover(worse,pivot) : worse.crossover(next,pivot);
+                        if (m != null) t = System.nanoTime();
+                        Chromosome slot = this.slot(new_population, i);
+                        new_population[i] = this.breed(next, worse, slot);
+                        if (m != null) {
+                            m.crossover_nanos += System.nanoTime() - t;
+                            if (slot == null) m.allocated_chromosomes++;
+                        }
+                        i++;
                     }
                 }
             }
         }
+    }
+    
+    // fills <new_population> from slot <from> on with children of parents
+    // picked by the selection strategy on <sel_fitness> (ranked as 
+    // <indicies>), each child crossed over and then mutated
+    // <m> collects the crossover and mutation times when it isn't null
+    protected void breedSelected( Chromosome[] new_population, int[] indicies, double[] sel_fitness,
+            int from, EvolutionMetrics m )
+    {
+        SelectionStrategy s = this.selection;
+        s.prepare(sel_fitness, indicies, this.population_size, this.rng);
+        for (int i = from; i < this.population_size; i++)
+        {
+            new_population[i] = this.offspring(s, sel_fitness, this.slot(new_population, i), m);
+        }
+    }
+    
+    // one child of two parents picked by <s>, crossed over and mutated,
+    // written into <slot> (null = a new chromosome)
+    // the parent fitter by <sel_fitness> leads the crossover
+    // <m> collects the crossover and mutation times when it isn't null
+    protected Chromosome offspring( SelectionStrategy s, double[] sel_fitness, Chromosome slot, EvolutionMetrics m )
+    {
+        // the fitter parent leads the crossover
+        int a = s.select(this.rng), b = s.select(this.rng);
+        if (sel_fitness[b] > sel_fitness[a] || sel_fitness[a] != sel_fitness[a])
+        {
+            int tmp = a; a = b; b = tmp;
+        }
         
-        this.most_fit = this.population[indicies[0]];
+        long t = m == null ? 0 : System.nanoTime();
+        Chromosome child = this.breed(this.population[a], this.population[b], slot);
+        if (m != null) {
+            m.crossover_nanos += System.nanoTime() - t;
+            if (slot == null) m.allocated_chromosomes++;
+            t = System.nanoTime();
+        }
+        this.mutate(child);
+        if (m != null) m.mutation_nanos += System.nanoTime() - t;
+        return child;
+    }
+    
+    // steady-state step: breeds <steady_state> children, rates only them,
+    // and puts them in place of the least fit (never of an elite, nor of
+    // the most fit, even without elites), then updates the most fit;
+    // parents are picked on <sel_fitness>, ranked as <order>
+    // <m> collects the crossover and mutation times when it isn't null
+    protected void replaceWorst( int[] indicies, int[] order, double[] sel_fitness, EvolutionMetrics m )
+    {
+        int n = this.population_size;
+        int k = Math.min(this.steady_state, n - Math.max(1, Math.min(this.elite_count, n)));
+        int best = indicies[0];
+        if (k <= 0)
+        {
+            this.keepMostFit(best);
+            return;
+        }
         
-        // evolve the generation
-        // Chromosome[] old = this.population.clone();
-        this.population = new_population;
-        this.count++;
+        SelectionStrategy s = this.parentSelection();
+        s.prepare(sel_fitness, order, n, this.rng);
         
-        // the next generation has not been rated yet...
-        this.did_rate = false;
+        // children are bred apart from the population, since their parents
+        // may be among those replaced; with a store they are bred into
+        // reusable scratch chromosomes and then copied into the arena
+        if (this.children == null || this.children.length < k)
+        {
+            this.children = new Chromosome[k];
+            this.children_fitness = new double[k];
+        }
+        for (int c = 0; c < k; c++)
+        {
+            Chromosome slot = null;
+            if (this.store != null)
+            {
+                if (this.children[c] == null) this.children[c] = (Chromosome)this.population[0].clone();
+                slot = this.children[c];
+            }
+            this.children[c] = this.offspring(s, sel_fitness, slot, m);
+        }
         
-        return this.count;
+        // only the children need rating
+        this.rate(this.children, this.children_fitness, k);
+        
+        for (int c = 0; c < k; c++)
+        {
+            int dst = indicies[n - 1 - c];
+            if (this.store != null) this.population[dst].copyFrom(this.children[c]);
+            else
+            {
+                this.population[dst] = this.children[c];
+                this.children[c] = null;
+            }
+            this.fitness[dst] = this.children_fitness[c];
+            
+            // a child may beat the most fit
+            double f = this.fitness[dst], b = this.fitness[best];
+            if (f > b || (b != b && f == f)) best = dst;
+        }
+        this.keepMostFit(best);
+    }
+    
+    // makes chromosome i of the population the most fit
+    private void keepMostFit( int i )
+    {
+        Chromosome best = this.population[i];
+        if (this.store != null) best = this.store.keepBest(best);
+        this.setMostFit(best, this.fitness[i], true);
+    }
+    
+    // makes <chr> the most fit; with <rated> its fitness is <f>
+    void setMostFit( Chromosome chr, double f, boolean rated )
+    {
+        this.most_fit = chr;
+        this.most_fit_fitness = f;
+        this.most_fit_rated = rated && chr != null;
+    }
+    
+    // the strategy that picks single parents: the selection strategy, or
+    // a binary tournament in place of the original loop, which only
+    // breeds whole generations
+    protected SelectionStrategy parentSelection()
+    {
+        if (this.selection != null) return this.selection;
+        if (this.parent_selection == null) this.parent_selection = new Selection.Tournament(2);
+        return this.parent_selection;
+    }
+    
+    // completes <m> with the times measured by evolve(), hands it to the
+    // listeners and starts measuring the next generation in the other instance
+    // <rate_loop> is m.rate_nanos when the breeding loop started: rating
+    // done within the loop (steady-state children) is rate time, not
+    // selection time
+    private void publishMetrics( EvolutionMetrics m, long t_start, long t_loop, long rate_loop, long bytes_start )
+    {
+        long t_end = System.nanoTime();
+        m.generation = this.count;
+        m.selection_nanos = Math.max(0, t_end - t_loop - m.crossover_nanos - m.mutation_nanos
+                - (m.rate_nanos - rate_loop));
+        m.total_nanos = t_end - t_start;
+        long bytes = EvolutionMetrics.threadAllocatedBytes();
+        m.allocated_bytes = bytes_start < 0 ? -1 : bytes - bytes_start;
+        this.metrics.publish(this, m);
+        this.pending_metrics = this.last_metrics;
+        this.last_metrics = m;
+        this.pending_metrics.reset();
+    }
+    
+    //
+    // migration (see IslandModel)
+    //
+    
+    // standalone copies of <k> chromosomes to send to another population:
+    // the k most fit when <elite>, otherwise k picked at random
+    public Chromosome[] emigrants( int k, boolean elite )
+    {
+        if (!this.did_rate) this.rate();
+        k = Math.min( k, this.population_size );
+        Chromosome[] y = new Chromosome[Math.max( 0, k )];
+        int[] order = elite ? this.ranking.rank(this.fitness) : null;
+        for (int i = 0; i < y.length; i++)
+        {
+            int src = elite ? order[i] : this.rng.nextInt(this.population_size);
+            y[i] = (Chromosome)this.population[src].clone();
+        }
+        return y;
+    }
+    
+    // replaces the least fit chromosomes with copies of <migrants>,
+    // rating only the newcomers
+    public void immigrate( Chromosome[] migrants )
+    {
+        if (!this.did_rate) this.rate();
+        int k = Math.min( migrants.length, this.population_size );
+        if (k <= 0) return;
+        int[] order = this.ranking.rank(this.fitness);
+        int[] dst = new int[k];
+        Chromosome[] in = new Chromosome[k];
+        for (int i = 0; i < k; i++)
+        {
+            dst[i] = order[this.population_size - 1 - i];
+            if (this.store != null) this.population[dst[i]].copyFrom(migrants[i]);
+            else this.population[dst[i]] = (Chromosome)migrants[i].clone();
+            in[i] = this.population[dst[i]];
+        }
+        
+        double[] f = new double[k];
+        this.rate(in, f, k);
+        for (int i = 0; i < k; i++) this.fitness[dst[i]] = f[i];
+        this.diversity.invalidate();
     }
     
+    // puts <chr> into slot i of <new_population> and returns the 
+    // chromosome now in that slot: <chr> itself, or with a population
+    // store, the slot's view holding a copy of <chr>
+    protected Chromosome keep( Chromosome[] new_population, int i, Chromosome chr )
+    {
+        if (this.store == null)
+        {
+            new_population[i] = chr;
+            return chr;
+        }
+        new_population[i].copyFrom(chr);
+        return new_population[i];
+    }
+    
+    // the chromosome a child for slot i should be written into
+    // (null = allocate a new one)
+    protected Chromosome slot( Chromosome[] new_population, int i )
+    {
+        return this.store == null ? null : new_population[i];
+    }
+    
+    // crosses two parents according to the crossover options;
+    // <a> is the fitter parent
+    protected Chromosome breed( Chromosome a, Chromosome b )
+    {
+        return this.breed(a, b, null);
+    }
+    
+    // as above, writing the child into <child> when it isn't null
+    protected Chromosome breed( Chromosome a, Chromosome b, Chromosome child )
+    {
+        // determine crossover strategy: which parent leads
+        Chromosome hi = a, lo = b;
+        if (this.x_strategy == CrossoverStrategy.Parent2Hi_Parent1Lo
+                || (this.x_strategy == CrossoverStrategy.Random && this.rng.nextBoolean()))
+        {
+            hi = b; lo = a;
+        }
+        
+        // start the child as a copy of the leading parent
+        boolean fresh = child == null;
+        if (fresh)
+        {
+            child = hi.childWith(lo);
+            if (child == null) return null;
+        }
+        else child.copyFrom(hi);
+        
+        // determine crossover operator
+        int n = hi.n_bits;
+        switch (this.x_op)
+        {
+            case TwoPoint:
+                int p1 = this.rng.nextInt(n + 1), p2 = this.rng.nextInt(n + 1);
+                Crossover.twoPoint(child, child, lo, p1, p2);
+                break;
+            case Uniform:
+                Crossover.uniform(child, child, lo, this.rng);
+                break;
+            case Segment:
+                Crossover.segments(child, child, lo, hi.componentBounds(), this.rng);
+                break;
+            default:
+                Crossover.singlePoint(child, child, lo, this.crossoverPivot(hi));
+        }
+        
+        // views skip decoding; their components are read on demand
+        return fresh ? child.finishChild() : child;
+    }
+    
+    // determine crossover pivot point, always within [0, n_bits]
+    protected int crossoverPivot( Chromosome chr )
+    {
+        int n = chr.n_bits;
+        boolean has_components = chr.components != null && chr.components.length > 0;
+        if (this.x_pt == CrossoverPoint.Random)
+            return Crossover.randomPivot(n, this.rng);
+        else if (this.x_pt == CrossoverPoint.A_BC && has_components)
+            return chr.components[0].n_bits();
+        else if (this.x_pt == CrossoverPoint.AB_C && has_components)
+            return n - chr.components[0].n_bits();
+        return n / 2;
+    }
+    
+    // the fitness function as a typed ChromosomeFitness, 
+    // rated through the cache if there is one
+    protected ChromosomeFitness<Chromosome> rater()
+    {
+        return this.fitness_cache == null 
+                ? ChromosomeFitness.of( this.ff ) : this.fitness_cache.wrap( this.ff );
+    }
+    
+    // mutates <chr> according to the mutation mode
+    // returns whether or not any bit was flipped
     protected boolean mutate( Chromosome chr )
     {
+        // per-bit modes decide bit by bit
+        if (this.mutation_mode != MutationMode.FixedVolume)
+            return this.applyMutation(chr) > 0;
+        
         // generate a random number to determine mutation
-        double rand = Math.random();
+        double rand = this.rng.nextDouble();
         if (rand <= this.mutation_rate)
         {
-            chr.mutate(this.mutation_volume);
+            chr.mutate(this.mutation_volume, this.rng);
             return true;
         }
         else return false;
     }
+    
+    // applies the mutation operator to <chr> without the mutation_rate test
+    // returns the number of bits flipped
+    protected int applyMutation( Chromosome chr )
+    {
+        switch (this.mutation_mode)
+        {
+            case PerBit:
+                return chr.mutatePerBit(this.bit_mutation_rate, this.rng);
+            case WordMask:
+                return chr.mutateWordMask(this.bit_mutation_rate, this.rng);
+            default:
+                chr.mutate(this.mutation_volume, this.rng);
+                return chr.cleanMutationVolume(this.mutation_volume);
+        }
+    }
             
     // the reason this is static is because sorting is a routine that you 
     // want to call into the class, not an object of that class
+    // returns an array of indicies ordered from most fit to least fit
+    // (see Ranking for the tie and NaN rules)
     public static int[] sort( double[] fitnesses )
     {
-        // var decls
-        int i, j, k;
         int n = fitnesses.length;
-        
-        // return value: an array of indicies arranged in order based on the
-        //   input fitness array
         int[] y = new int[n];
-        
-        // loop for filling up all fitnesses: O(n) operation
-        for (i = 0; i < n; i++)
-        {
-            // finding the max value in the fitness array and its index
-            int max_i = 0;
-            double max;
-            
-            // looping over all the fitnesses again, from the beginning
-            // O(n^2): performing n*n ops
-            for (j = 0, max = 0; j < n; j++)
-            {
-                // if we find a possible max value
-                if (fitnesses[j] > max)
-                {
-                    // hold a reference to the previous max value
-                    double oldmax = max;
-                    // assign max to be the current fitness at j
-                    max = fitnesses[j];
-                    
-                    // a flag to indicate that j already exists in y[]
-                    boolean j_exists = false;
-                    
-                    // loop an index k from 0 to the current index i
-                    // ex. at i = 3, we are filling up the third element in 
-                    //  our return index array
-                    for (k = 0; k < i; k++)
-                    {
-                        if (y[k] == j) {
-                            max = oldmax;
-                            j_exists = true;
-                            break;
-                        }
-                    }
-                    
-                    // if j doesn't exist, fill it into y[]
-                    if (!j_exists) {
-                        max_i = j;
-                    }
-                }
-            }
-            // set the max index to the value of i'th value at y
-            y[i] = max_i;
-        }
+        Ranking.rank( fitnesses, y, new int[n] );
         return y;
     }
     
@@ -367,11 +958,15 @@ public abstract class Generation // abbreviation: gen, plural: gens
     
     // returns an array of random bitstrings
     public static String[] randomPopulation( int n, int n_bits )
+    {
+        return randomPopulation( n, n_bits, RandomSource.current() );
+    }
+    public static String[] randomPopulation( int n, int n_bits, RandomSource rng )
     {
         String[] y = new String[n];
         for (int i = 0; i < n; i++)
         {
-            y[i] = BitString.randomBitString(n_bits);
+            y[i] = BitString.randomBitString(n_bits, rng);
         }
         return y;
     }
@@ -380,8 +975,9 @@ public abstract class Generation // abbreviation: gen, plural: gens
     public String toString()
     {
         // var decls
-        String y = "g" + count + ": \n";
         int i, n = this.getPopulationSize();
+        StringBuilder y = new StringBuilder( 16 + n * (this.population[0].n_bits + 48) );
+        y.append("g").append(count).append(": \n");
 
         // get all the fitnesses and populations
         double[] fitnesses = this.getFitness();
@@ -391,11 +987,10 @@ public abstract class Generation // abbreviation: gen, plural: gens
         // corresponding fitnesses
         for (i = 0; i < n; i++)
         {
-            y += "  " + (i+1) + ". Chromosome: ";
-            y += pop[i].toString() + "    Fitnesses: ";
-            y += fitnesses[i] + "\n";
-            
+            y.append("  ").append(i+1).append(". Chromosome: ");
+            y.append(pop[i].toString()).append("    Fitnesses: ");
+            y.append(fitnesses[i]).append("\n");
         }
-        return y;
+        return y.toString();
     }
 }
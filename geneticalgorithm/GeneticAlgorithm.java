@@ -25,8 +25,25 @@ public abstract class GeneticAlgorithm
     //
     public Generation getGeneration() {return this.generation;}
     
+    // metrics of each generation (see EvolutionMetrics)
+    public void addMetricsListener( MetricsListener l ) { generation.addMetricsListener(l); }
+    public void removeMetricsListener( MetricsListener l ) { generation.removeMetricsListener(l); }
+    public EvolutionMetrics getMetrics() {return generation.getMetrics();}
+    
+    // diversity of the current generation (see Diversity)
+    public Diversity getDiversity() {return generation.getDiversity();}
+    
+    // when to stop evolving: the target fitness, and any criteria added
+    // (see Termination)
+    public Termination getTermination() {return termination;}
+    public void addTermination( TerminationCriterion c ) { termination.add(c); }
+    
+    // whether the run stopped because the target fitness was reached
+    public boolean isTargetReached() {return termination.getFired() instanceof Termination.TargetFitness;}
+    
     protected double target_fitness;
     protected int options;
+    protected Termination termination;
     
     //
     // constructor methods
@@ -61,6 +78,7 @@ public abstract class GeneticAlgorithm
     {
     	this.generation = gen;
         this.target_fitness = target_fit;
+        this.termination = new Termination( new Termination.TargetFitness(target_fit) );
     }
     
     // 
@@ -68,17 +86,26 @@ public abstract class GeneticAlgorithm
     //
     
     // evolve the generation
-    // returns whether or not the most fit chromosome
-    //   beats the fitness function
+    // returns whether the run should stop: the most fit chromosome
+    //   beats the fitness function, or another termination criterion
+    //   was met (getTermination() tells which, and what it cost)
+    // the next call after a stop starts a new run
     public boolean evolve()
     {
+        if (!this.termination.isStarted()) this.termination.start(this.generation);
         this.generation.evolve();
-        if (generation.rateMostFit() >= this.target_fitness)
-        {
-        	return true;
-        }
-        return false;
+        return this.termination.isMet(this.generation, generation.getMostFitFitness());
     }
     
+    // evolve without generation boundaries, breeding on this thread and
+    // rating on <threads> others, for up to <evaluations> ratings
+    // (see PipelinedEvolution)
+    // returns whether or not the most fit chromosome
+    //   beats the fitness function
+    public boolean evolvePipelined( int threads, long evaluations )
+    {
+        new PipelinedEvolution(this.generation, threads).run(evaluations, this.target_fitness);
+        return generation.getMostFitFitness() >= this.target_fitness;
+    }
     
 }
\ No newline at end of file
@@ -0,0 +1,328 @@
+//===========================================================
+// title = HistoryLog.java
+// by = Brian Kim
+// description = an append-only log of every generation of a
+//  run, streamed to disk so the history never has to fit in
+//  memory
+//
+// notes:
+// - the log is a directory of segment files named after the
+//    first generation they hold (history-<generation>.seg); a
+//    new segment starts once the current one passes
+//    segment_bytes, so old segments can be archived or deleted
+// - segments are only ever appended to: a log opened on a
+//    directory that already holds one (say, a run resumed from a
+//    Checkpoint) adds to it, after cutting off any record a crash
+//    left half written; records of the generation it starts at
+//    and later ones (logged after the checkpoint was taken) are
+//    cut off too, so generations always go up through the log
+// - record(), called by Generation.evolve(), only copies the
+//    generation into a buffer and queues it; a writer thread
+//    drains the queue in batches with one gathering write each
+// - the queue holds at most <capacity> records: record() waits
+//    when it is full, which bounds memory if the disk is slow
+// - each record (little endian):
+//     int   length in bytes (excluding this int)
+//     int   generation, population size, n_bits, full flag
+//     double best, mean, worst, standard deviation of fitness
+//     long[n_words] most fit genome
+//     when full: double[size] fitness, long[size * n_words] genomes
+// - read it back with HistoryReader
+//===========================================================
+
+package geneticalgorithm;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+public class HistoryLog implements AutoCloseable
+{
+    //
+    // properties (instance variables)
+    //
+
+    // segment file names: PREFIX + 10 digit generation + SUFFIX
+    public static final String PREFIX = "history-", SUFFIX = ".seg";
+
+    protected Path dir;
+    protected boolean full_population; // also record every chromosome
+    protected long segment_bytes;      // start a new segment past this size
+    protected int record_every = 1;    // record one generation in this many
+
+    // the current segment
+    protected FileChannel segment;
+    protected long segment_size;
+    private boolean resumed = false; // = the last segment already there was looked for
+
+    // records waiting for the writer thread
+    protected BlockingQueue<ByteBuffer> queue;
+    private static final ByteBuffer END = ByteBuffer.allocate( 0 );
+    protected Thread writer;
+    protected volatile IOException failure;
+
+    //
+    // constructors
+    //
+
+    // logs statistics and the most fit genome of each generation into <dir>
+    public HistoryLog( Path dir ) throws IOException
+    {
+        this( dir, false, 64L << 20, 64 );
+    }
+
+    // <full_population>: also log every chromosome and its fitness
+    // <segment_bytes>: approximate size of each segment file
+    // <capacity>: most records waiting to be written
+    public HistoryLog( Path dir, boolean full_population, long segment_bytes, int capacity ) throws IOException
+    {
+        this.dir = dir;
+        this.full_population = full_population;
+        this.segment_bytes = Math.max( 1, segment_bytes );
+        this.queue = new ArrayBlockingQueue<ByteBuffer>( Math.max( 1, capacity ) );
+        Files.createDirectories( dir );
+
+        this.writer = new Thread( this::writeLoop, "ga-history" );
+        this.writer.setDaemon( true );
+        this.writer.start();
+    }
+
+    //
+    // accessor methods
+    //
+    public Path getDirectory() {return dir;}
+    public boolean recordsFullPopulation() {return full_population;}
+    public int getRecordEvery() {return record_every;}
+    public void setRecordEvery( int n ) { record_every = Math.max( 1, n ); }
+
+    //
+    // important API
+    //
+
+    // queues one generation: <population> rated with <fitness>, most fit
+    // first in <order> (see Ranking); waits if the queue is full
+    public void record( int generation, Chromosome[] population, double[] fitness, int[] order )
+    {
+        if (generation % record_every != 0) return;
+        if (failure != null)
+        {
+            System.err.println( err_msg() + failure.getMessage() );
+            return;
+        }
+        ByteBuffer buf = encode( generation, population, fitness, order, full_population );
+        try {
+            queue.put( buf );
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // writes out every queued record and closes the log
+    @Override
+    public void close() throws IOException
+    {
+        try {
+            queue.put( END );
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) throw failure;
+    }
+
+    // one record, ready to be written
+    public static ByteBuffer encode( int generation, Chromosome[] population, double[] fitness,
+            int[] order, boolean full )
+    {
+        int size = population.length;
+        int n_bits = population[0].n_bits;
+        int n_words = population[0].n_words;
+
+        // fitness statistics (NaNs are left out)
+        double sum = 0, sum_sq = 0;
+        double worst = Double.POSITIVE_INFINITY;
+        int n = 0;
+        for (int i = 0; i < size; i++)
+        {
+            double f = fitness[i];
+            if (f != f) continue;
+            sum += f;
+            sum_sq += f * f;
+            if (f < worst) worst = f;
+            n++;
+        }
+        double mean = n == 0 ? Double.NaN : sum / n;
+        double var = n == 0 ? Double.NaN : Math.max( 0, sum_sq / n - mean * mean );
+        if (n == 0) worst = Double.NaN;
+        Chromosome best = population[order[0]];
+
+        int body = 16 + 32 + 8 * n_words + (full ? 8 * size + 8 * size * n_words : 0);
+        ByteBuffer buf = ByteBuffer.allocate( 4 + body ).order( ByteOrder.LITTLE_ENDIAN );
+        buf.putInt( body ).putInt( generation ).putInt( size ).putInt( n_bits ).putInt( full ? 1 : 0 );
+        buf.putDouble( fitness[order[0]] ).putDouble( mean ).putDouble( worst ).putDouble( Math.sqrt( var ) );
+        buf.asLongBuffer().put( best.words, best.base, n_words );
+        buf.position( buf.position() + 8 * n_words );
+        if (full)
+        {
+            buf.asDoubleBuffer().put( fitness, 0, size );
+            buf.position( buf.position() + 8 * size );
+            for (int i = 0; i < size; i++)
+            {
+                Chromosome chr = population[i];
+                buf.asLongBuffer().put( chr.words, chr.base, n_words );
+                buf.position( buf.position() + 8 * n_words );
+            }
+        }
+        buf.flip();
+        return buf;
+    }
+
+    //
+    // utility methods
+    //
+
+    // convenience method for error reporting
+    private static String err_msg() {return "error: HistoryLog: ";}
+
+    // the segment file that starts at <generation>
+    public static Path segmentPath( Path dir, int generation )
+    {
+        return dir.resolve( String.format( "%s%010d%s", PREFIX, generation, SUFFIX ) );
+    }
+
+    // the writer thread: drains the queue in batches
+    private void writeLoop()
+    {
+        List<ByteBuffer> batch = new ArrayList<ByteBuffer>();
+        boolean open = true;
+        try {
+            while (open)
+            {
+                batch.add( queue.take() );
+                queue.drainTo( batch );
+                if (batch.get( batch.size() - 1 ) == END)
+                {
+                    batch.remove( batch.size() - 1 );
+                    open = false;
+                }
+                write( batch );
+                batch.clear();
+            }
+        } catch (IOException e) {
+            failure = e;
+            queue.clear();
+        } catch (InterruptedException e) {
+            // abandoned
+        } finally {
+            try {
+                if (segment != null) segment.close();
+            } catch (IOException e) {
+                if (failure == null) failure = e;
+            }
+        }
+    }
+
+    // opens the segment starting at <generation> to append to it, creating
+    // it if need be, or the first time, the last segment already in the
+    // directory; a half-written record at its end is cut off
+    private void openSegment( int generation ) throws IOException
+    {
+        int first = generation;
+        if (!resumed)
+        {
+            resumed = true;
+            int last = resume( first );
+            if (last >= 0) generation = last;
+        }
+        Path path = segmentPath( dir, generation );
+        segment = FileChannel.open( path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE );
+        long end = 0, size = segment.size();
+        boolean stale = false;
+        ByteBuffer head = ByteBuffer.allocate( 8 ).order( ByteOrder.LITTLE_ENDIAN );
+        while (end + 8 <= size)
+        {
+            head.clear();
+            while (head.hasRemaining()) segment.read( head, end + head.position() );
+            long next = end + 4 + head.getInt( 0 );
+            if (next > size || next < end + 8) break;
+            if (head.getInt( 4 ) >= first)
+            {
+                stale = true;
+                break;
+            }
+            end = next;
+        }
+        if (end < size)
+        {
+            System.err.println( err_msg() + "dropping " + (size - end) + " bytes of "
+                    + (stale ? "records from generation " + first + " on" : "a half-written record")
+                    + " from " + path );
+            segment.truncate( end );
+        }
+        segment.position( end );
+        segment_size = end;
+    }
+
+    // before the first write: deletes the segments that only hold
+    // generations from <first> on, and returns the first generation of
+    // the last segment left (-1 if there is none)
+    private int resume( int first ) throws IOException
+    {
+        int last = -1;
+        List<Path> stale = new ArrayList<Path>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream( dir, PREFIX + "*" + SUFFIX ))
+        {
+            for (Path p : files)
+            {
+                String name = p.getFileName().toString();
+                int start = Integer.parseInt( name.substring( PREFIX.length(), name.length() - SUFFIX.length() ) );
+                if (start >= first) stale.add( p );
+                else last = Math.max( last, start );
+            }
+        }
+        for (Path p : stale)
+        {
+            System.err.println( err_msg() + "dropping " + p + ", generation " + first + " is logged again" );
+            Files.delete( p );
+        }
+        return last;
+    }
+
+    // writes <batch>, starting new segments as needed
+    private void write( List<ByteBuffer> batch ) throws IOException
+    {
+        int from = 0;
+        while (from < batch.size())
+        {
+            if (segment == null || segment_size >= segment_bytes)
+            {
+                if (segment != null) segment.close();
+                openSegment( batch.get( from ).getInt( 4 ) );
+            }
+
+            // as many records as fit in this segment, in one write
+            int to = from;
+            long bytes = 0;
+            while (to < batch.size() && (to == from || segment_size + bytes < segment_bytes))
+            {
+                bytes += batch.get( to ).remaining();
+                to++;
+            }
+            ByteBuffer[] bufs = batch.subList( from, to ).toArray( new ByteBuffer[0] );
+            long left = bytes;
+            while (left > 0) left -= segment.write( bufs );
+            segment_size += bytes;
+            from = to;
+        }
+    }
+}
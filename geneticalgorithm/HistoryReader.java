@@ -0,0 +1,153 @@
+//===========================================================
+// title = HistoryReader.java
+// by = Brian Kim
+// description = reads the generations written by a HistoryLog
+//  back in order, or from any generation on
+//
+// notes:
+// - only one segment is open at a time and records are read
+//    one by one, so memory use does not depend on the log size
+// - seek(k) picks the segment by its file name and skips
+//    records by their length prefix without decoding them
+//===========================================================
+
+package geneticalgorithm;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+public class HistoryReader implements AutoCloseable
+{
+    //
+    // properties (instance variables)
+    //
+    protected Path dir;
+    protected List<Integer> segments = new ArrayList<Integer>(); // first generation of each, sorted
+    protected int next_segment;
+    protected FileChannel segment;
+    protected ByteBuffer length = ByteBuffer.allocate( 4 ).order( ByteOrder.LITTLE_ENDIAN );
+
+    //
+    // constructors
+    //
+
+    // a reader positioned at the first record in <dir>
+    public HistoryReader( Path dir ) throws IOException
+    {
+        this.dir = dir;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream( dir,
+                HistoryLog.PREFIX + "*" + HistoryLog.SUFFIX ))
+        {
+            for (Path p : files)
+            {
+                String name = p.getFileName().toString();
+                segments.add( Integer.parseInt( name.substring( HistoryLog.PREFIX.length(),
+                        name.length() - HistoryLog.SUFFIX.length() ) ) );
+            }
+        }
+        Collections.sort( segments );
+    }
+
+    //
+    // important API
+    //
+
+    // the next record, or null at the end of the log
+    public HistoryRecord next() throws IOException
+    {
+        int len = nextLength();
+        if (len < 0) return null;
+        ByteBuffer body = ByteBuffer.allocate( len ).order( ByteOrder.LITTLE_ENDIAN );
+        readFully( body );
+        body.flip();
+        return HistoryRecord.read( body );
+    }
+
+    // moves to the first record of generation <generation> or later
+    public void seek( int generation ) throws IOException
+    {
+        close();
+
+        // the last segment starting at or before <generation>
+        next_segment = 0;
+        while (next_segment + 1 < segments.size() && segments.get( next_segment + 1 ) <= generation)
+            next_segment++;
+
+        // skip the records before it
+        while (true)
+        {
+            int len = nextLength();
+            if (len < 0) return;
+            long at = segment.position();
+            ByteBuffer gen = ByteBuffer.allocate( 4 ).order( ByteOrder.LITTLE_ENDIAN );
+            readFully( gen );
+            if (gen.getInt( 0 ) >= generation)
+            {
+                // step back so that next() reads this record
+                segment.position( at - 4 );
+                return;
+            }
+            segment.position( at + len );
+        }
+    }
+
+    // calls <f> with every record from the current position on
+    public void replay( Consumer<HistoryRecord> f ) throws IOException
+    {
+        HistoryRecord r;
+        while ((r = next()) != null) f.accept( r );
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (segment != null) segment.close();
+        segment = null;
+    }
+
+    //
+    // utility methods
+    //
+
+    // the length of the next record, opening segments as needed
+    // (-1 at the end of the log)
+    private int nextLength() throws IOException
+    {
+        while (true)
+        {
+            if (segment == null)
+            {
+                if (next_segment >= segments.size()) return -1;
+                segment = FileChannel.open( HistoryLog.segmentPath( dir, segments.get( next_segment++ ) ),
+                        StandardOpenOption.READ );
+            }
+            length.clear();
+            if (segment.read( length ) > 0)
+            {
+                readFully( length );
+                return length.getInt( 0 );
+            }
+            close();
+        }
+    }
+
+    // fills <buf> from the current segment
+    private void readFully( ByteBuffer buf ) throws IOException
+    {
+        while (buf.hasRemaining())
+        {
+            if (segment.read( buf ) < 0) throw new EOFException( "error: HistoryReader: truncated record" );
+        }
+    }
+}
@@ -0,0 +1,111 @@
+//===========================================================
+// title = HistoryRecord.java
+// by = Brian Kim
+// description = one generation as written to and read back
+//  from a HistoryLog
+//
+// notes:
+// - genomes are packed words (see BitString), genome i of the
+//    population at words [i*n_words, (i+1)*n_words)
+// - fitness and genomes are null unless the log was recording
+//    full populations
+//===========================================================
+
+package geneticalgorithm;
+
+import java.nio.ByteBuffer;
+
+public class HistoryRecord
+{
+    //
+    // properties (instance variables)
+    //
+    public final int generation;      // = Generation.getCount() when recorded
+    public final int population_size;
+    public final int n_bits;
+    public final double best, mean, worst, std_dev; // fitness statistics
+    public final long[] best_genome;
+    public final double[] fitness;    // = null without the full population
+    public final long[] genomes;      // = null without the full population
+
+    //
+    // constructors
+    //
+    HistoryRecord( int generation, int population_size, int n_bits,
+            double best, double mean, double worst, double std_dev,
+            long[] best_genome, double[] fitness, long[] genomes )
+    {
+        this.generation = generation;
+        this.population_size = population_size;
+        this.n_bits = n_bits;
+        this.best = best;
+        this.mean = mean;
+        this.worst = worst;
+        this.std_dev = std_dev;
+        this.best_genome = best_genome;
+        this.fitness = fitness;
+        this.genomes = genomes;
+    }
+
+    //
+    // accessor methods
+    //
+    public boolean hasPopulation() {return genomes != null;}
+    public int n_words() {return BitString.wordCount( n_bits );}
+
+    // the most fit chromosome's bits
+    public BitString getBest()
+    {
+        return toBitString( best_genome, 0 );
+    }
+
+    // the bits of chromosome i (null without the full population)
+    public BitString getGenome( int i )
+    {
+        return genomes == null ? null : toBitString( genomes, i * n_words() );
+    }
+
+    //
+    // utility methods
+    //
+
+    // <n_bits> bits from <src> starting at word <from>
+    private BitString toBitString( long[] src, int from )
+    {
+        BitString y = new BitString( n_bits );
+        for (int w = 0; w < y.n_words(); w++)
+        {
+            y.setWord( w, src[from + w] );
+        }
+        return y;
+    }
+
+    // reads a record body (positioned just after its length)
+    static HistoryRecord read( ByteBuffer buf )
+    {
+        int generation = buf.getInt();
+        int size = buf.getInt();
+        int n_bits = buf.getInt();
+        boolean full = buf.getInt() != 0;
+        double best = buf.getDouble(), mean = buf.getDouble(),
+                worst = buf.getDouble(), std_dev = buf.getDouble();
+        int n_words = BitString.wordCount( n_bits );
+
+        long[] best_genome = new long[n_words];
+        buf.asLongBuffer().get( best_genome );
+        buf.position( buf.position() + 8 * n_words );
+
+        double[] fitness = null;
+        long[] genomes = null;
+        if (full)
+        {
+            fitness = new double[size];
+            buf.asDoubleBuffer().get( fitness );
+            buf.position( buf.position() + 8 * size );
+            genomes = new long[size * n_words];
+            buf.asLongBuffer().get( genomes );
+        }
+        return new HistoryRecord( generation, size, n_bits, best, mean, worst, std_dev,
+                best_genome, fitness, genomes );
+    }
+}
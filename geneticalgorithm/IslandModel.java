@@ -0,0 +1,223 @@
+//===========================================================
+// title = IslandModel.java
+// by = Brian Kim
+// description = runs several generations (islands) side by
+//  side, each on its own thread, and lets good chromosomes
+//  migrate between them every few generations
+//
+// notes:
+// - each island evolves independently; the only shared state
+//    is one lock-free inbox (ConcurrentLinkedQueue) per island,
+//    so islands never wait on each other
+// - every <interval> generations an island sends <migrants>
+//    copies (elite or random) to its neighbour (Ring) or to a
+//    random other island (Random), then takes in whatever has
+//    arrived in its own inbox, replacing its least fit members
+// - islands should not share a RandomSource, and are best left
+//    with the default SerialEvaluator: the model already keeps
+//    one core busy per island
+// - use split() of one seeded RandomSource for every island's
+//    generation to make runs reproducible up to thread timing
+// - with setTransport(), island 0 also trades migrants with the
+//    first peer of a SocketMigrationTransport, so island models
+//    in different processes form one larger ring
+//===========================================================
+
+package geneticalgorithm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class IslandModel
+{
+    //
+    // enums
+    //
+    
+    // where migrants are sent
+    public static enum Topology {
+        Ring,   // island i sends to island i+1
+        Random  // each migration picks another island at random
+    }
+    
+    // which chromosomes are sent
+    public static enum MigrantSelection {
+        Elite,  // the most fit
+        Random  // chosen at random
+    }
+    
+    //
+    // properties (instance variables)
+    //
+    protected Generation[] islands;
+    protected List<ConcurrentLinkedQueue<Chromosome[]>> inbox;
+    
+    // migration options
+    // (defaults: Ring, every 10 generations, 2 migrants, Elite)
+    protected Topology topology = Topology.Ring;
+    protected int interval = 10;
+    protected int migrants = 2;
+    protected MigrantSelection selection = MigrantSelection.Elite;
+    
+    // seeds the per-island streams used for the Random topology
+    protected RandomSource rng = new RandomSource();
+    
+    // optional link to island models in other processes
+    protected SocketMigrationTransport transport;
+    
+    // stop signal shared by all islands
+    protected final AtomicBoolean done = new AtomicBoolean();
+    
+    //
+    // constructors
+    //
+    public IslandModel( Generation[] islands )
+    {
+        this.islands = islands;
+        this.inbox = new ArrayList<ConcurrentLinkedQueue<Chromosome[]>>(islands.length);
+        for (int i = 0; i < islands.length; i++)
+        {
+            this.inbox.add(new ConcurrentLinkedQueue<Chromosome[]>());
+        }
+    }
+    
+    //
+    // accessor methods
+    //
+    public Generation[] getIslands() {return islands;}
+    public Generation getIsland( int i ) {return islands[i];}
+    
+    public Topology getTopology() {return topology;}
+    public void setTopology( Topology t ) { topology = t; }
+    public int getInterval() {return interval;}
+    public void setInterval( int n ) { interval = Math.max( 1, n ); }
+    public int getMigrants() {return migrants;}
+    public void setMigrants( int n ) { migrants = Math.max( 0, n ); }
+    public MigrantSelection getMigrantSelection() {return selection;}
+    public void setMigrantSelection( MigrantSelection s ) { selection = s; }
+    public void setSeed( long seed ) { rng = new RandomSource(seed); }
+    public SocketMigrationTransport getTransport() {return transport;}
+    public void setTransport( SocketMigrationTransport t ) { transport = t; }
+    
+    // the most fit chromosome found on any island so far
+    public Chromosome getMostFit()
+    {
+        Chromosome best = null;
+        double best_fit = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < islands.length; i++)
+        {
+            Chromosome chr = islands[i].getMostFit();
+            if (chr == null) continue;
+            double fit = islands[i].getMostFitFitness();
+            if (best == null || fit > best_fit)
+            {
+                best = chr;
+                best_fit = fit;
+            }
+        }
+        return best;
+    }
+    
+    //
+    // important API
+    //
+    
+    // evolves every island for <generations> generations
+    public Chromosome run( int generations )
+    {
+        return run( generations, Double.POSITIVE_INFINITY );
+    }
+    
+    // evolves every island for up to <generations> generations, stopping
+    // all of them as soon as one reaches <target_fitness>
+    // returns the most fit chromosome found
+    public Chromosome run( final int generations, final double target_fitness )
+    {
+        done.set( false );
+        ExecutorService pool = Executors.newFixedThreadPool( islands.length, runnable -> {
+            Thread t = new Thread( runnable, "ga-island" );
+            t.setDaemon( true );
+            return t;
+        });
+        try {
+            Future<?>[] tasks = new Future<?>[islands.length];
+            for (int i = 0; i < islands.length; i++)
+            {
+                final int island = i;
+                final RandomSource island_rng = rng.split();
+                tasks[i] = pool.submit( () -> evolveIsland( island, generations, target_fitness, island_rng ) );
+            }
+            ChunkedPoolEvaluator.awaitAll( tasks );
+        } finally {
+            pool.shutdown();
+        }
+        return getMostFit();
+    }
+    
+    // asks every running island to stop after its current generation
+    public void stop()
+    {
+        done.set( true );
+    }
+    
+    //
+    // utility methods
+    //
+    
+    // the main loop of one island's thread
+    protected void evolveIsland( int i, int generations, double target_fitness, RandomSource island_rng )
+    {
+        Generation gen = islands[i];
+        for (int g = 1; g <= generations && !done.get(); g++)
+        {
+            gen.evolve();
+            if (gen.getMostFitFitness() >= target_fitness)
+            {
+                done.set( true );
+                break;
+            }
+            if (g % interval == 0) migrate( i, island_rng );
+        }
+    }
+    
+    // sends this island's migrants and takes in any that have arrived
+    protected void migrate( int i, RandomSource island_rng )
+    {
+        Generation gen = islands[i];
+        if (i == 0 && transport != null)
+        {
+            transport.exchange( gen, 0, migrants, selection == MigrantSelection.Elite );
+        }
+        if (islands.length < 2) return;
+        
+        if (migrants > 0)
+        {
+            Chromosome[] out = gen.emigrants( migrants, selection == MigrantSelection.Elite );
+            inbox.get( destination( i, island_rng ) ).offer( out );
+        }
+        
+        Chromosome[] in;
+        while ((in = inbox.get( i ).poll()) != null)
+        {
+            gen.immigrate( in );
+        }
+    }
+    
+    // the island that island i sends its migrants to
+    protected int destination( int i, RandomSource island_rng )
+    {
+        int n = islands.length;
+        if (topology == Topology.Random)
+        {
+            // any island but i
+            int d = island_rng.nextInt( n - 1 );
+            return d >= i ? d + 1 : d;
+        }
+        return (i + 1) % n;
+    }
+}
@@ -0,0 +1,79 @@
+//===========================================================
+// title = JfrMetricsExporter.java
+// by = Brian Kim
+// description = a metrics listener that turns every evolved
+//  generation into a Java Flight Recorder event
+//
+// notes:
+// - record with e.g. -XX:StartFlightRecording and look for
+//    geneticalgorithm.Generation events in JDK Mission Control
+//    or with `jfr print --events geneticalgorithm.Generation`
+// - nothing is built while the event is disabled; an enabled
+//    event is a short-lived object that the JIT usually removes
+//    by escape analysis
+//===========================================================
+
+package geneticalgorithm;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+public class JfrMetricsExporter implements MetricsListener
+{
+    // the event written for each generation
+    @Name("geneticalgorithm.Generation")
+    @Label("Generation Evolved")
+    @Category("Genetic Algorithm")
+    @Description("Timings and statistics of one call to Generation.evolve()")
+    public static class GenerationEvent extends Event
+    {
+        @Label("Name") String name;
+        @Label("Generation") int generation;
+        @Label("Rate Time") @Timespan(Timespan.NANOSECONDS) long rate;
+        @Label("Sort Time") @Timespan(Timespan.NANOSECONDS) long sort;
+        @Label("Statistics Time") @Timespan(Timespan.NANOSECONDS) long stats;
+        @Label("Selection Time") @Timespan(Timespan.NANOSECONDS) long selection;
+        @Label("Crossover Time") @Timespan(Timespan.NANOSECONDS) long crossover;
+        @Label("Mutation Time") @Timespan(Timespan.NANOSECONDS) long mutation;
+        @Label("Evaluations") long evaluations;
+        @Label("Evaluations Per Second") double evaluationsPerSecond;
+        @Label("Best Fitness") double best;
+        @Label("Mean Fitness") double mean;
+        @Label("Fitness Std Dev") double stdDev;
+        @Label("Diversity") double diversity;
+        @Label("Allocated Chromosomes") long allocatedChromosomes;
+        @Label("Allocated") @DataAmount(DataAmount.BYTES) long allocated;
+    }
+
+    private static final EventType TYPE = EventType.getEventType( GenerationEvent.class );
+
+    @Override
+    public void generationEvolved( Generation gen, EvolutionMetrics m )
+    {
+        if (!TYPE.isEnabled()) return;
+        GenerationEvent e = new GenerationEvent();
+        e.name = gen.name;
+        e.generation = m.generation;
+        e.rate = m.rate_nanos;
+        e.sort = m.sort_nanos;
+        e.stats = m.stats_nanos;
+        e.selection = m.selection_nanos;
+        e.crossover = m.crossover_nanos;
+        e.mutation = m.mutation_nanos;
+        e.evaluations = m.evaluations;
+        e.evaluationsPerSecond = m.getEvaluationsPerSecond();
+        e.best = m.best;
+        e.mean = m.mean;
+        e.stdDev = m.std_dev;
+        e.diversity = m.diversity;
+        e.allocatedChromosomes = m.allocated_chromosomes;
+        e.allocated = m.allocated_bytes;
+        e.commit();
+    }
+}
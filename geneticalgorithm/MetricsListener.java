@@ -0,0 +1,18 @@
+//===========================================================
+// title = MetricsListener.java
+// by = Brian Kim
+// description = receives the metrics of every evolved
+//  generation (see MetricsRegistry)
+//
+// notes:
+// - called on the thread that ran evolve(), after the new
+//    generation is in place; keep it short
+// - <m> is reused for the next generation: copy what you keep
+//===========================================================
+
+package geneticalgorithm;
+
+public interface MetricsListener
+{
+    void generationEvolved( Generation gen, EvolutionMetrics m );
+}
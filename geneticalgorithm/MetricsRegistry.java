@@ -0,0 +1,64 @@
+//===========================================================
+// title = MetricsRegistry.java
+// by = Brian Kim
+// description = the listeners a generation publishes its
+//  metrics to
+//
+// notes:
+// - listeners are kept in an array that is replaced on every
+//    add/remove, so publishing is a plain loop with no locking
+//    and no allocation
+// - a generation only measures anything while its registry has
+//    at least one listener
+//===========================================================
+
+package geneticalgorithm;
+
+public class MetricsRegistry
+{
+    //
+    // properties (instance variables)
+    //
+    private static final MetricsListener[] NONE = new MetricsListener[0];
+    private volatile MetricsListener[] listeners = NONE;
+
+    //
+    // accessor methods
+    //
+    public boolean isEmpty() {return listeners.length == 0;}
+    public MetricsListener[] getListeners() {return listeners.clone();}
+
+    //
+    // important API
+    //
+    public synchronized void add( MetricsListener l )
+    {
+        MetricsListener[] y = java.util.Arrays.copyOf( listeners, listeners.length + 1 );
+        y[listeners.length] = l;
+        listeners = y;
+    }
+
+    public synchronized void remove( MetricsListener l )
+    {
+        MetricsListener[] x = listeners;
+        for (int i = 0; i < x.length; i++)
+        {
+            if (x[i] != l) continue;
+            MetricsListener[] y = new MetricsListener[x.length - 1];
+            System.arraycopy( x, 0, y, 0, i );
+            System.arraycopy( x, i + 1, y, i, x.length - i - 1 );
+            listeners = y;
+            return;
+        }
+    }
+
+    // hands <m> to every listener
+    public void publish( Generation gen, EvolutionMetrics m )
+    {
+        MetricsListener[] x = listeners;
+        for (int i = 0; i < x.length; i++)
+        {
+            x[i].generationEvolved( gen, m );
+        }
+    }
+}
@@ -0,0 +1,315 @@
+//===========================================================
+// title = Niching.java
+// by = Brian Kim
+// description = fitness sharing and clearing (see
+//  Generation.setNiching()), with neighbours found through
+//  locality-sensitive hashing instead of comparing every pair
+//
+// notes:
+// - two chromosomes are in the same niche when their Hamming
+//    distance is below <radius>
+// - bit-sampling LSH: each of <tables> hash tables keys every
+//    chromosome by <sample_bits> loci drawn at random (anew every
+//    generation); chromosomes d bits apart share a key with
+//    probability (1 - d/n_bits)^sample_bits, so close ones almost
+//    always meet in some table and distant ones rarely do
+// - a table is a sort of (key, index) pairs, O(n log n); only
+//    chromosomes sharing a bucket are compared, at most
+//    <max_candidates> per chromosome over all tables, so a
+//    generation costs O(n (log n + max_candidates * n_words))
+//    rather than O(n^2 n_words)
+// - when a bucket holds more than a table's share of candidates,
+//    a random window of it stands for the rest (sharing weighs
+//    each candidate by 1 / its chance of being picked), so a
+//    converged population stays near-linear too; the result is
+//    then an estimate
+// - sample_bits = 0 picks it from the radius, so that chromosomes
+//    <radius> bits apart share a key half of the time
+//===========================================================
+
+package geneticalgorithm;
+
+import java.util.Arrays;
+
+public class Niching
+{
+    // the bucketing both strategies share
+    public static abstract class Lsh implements NichingStrategy
+    {
+        protected int radius;
+        protected int tables = 4;
+        protected int sample_bits = 0;    // = 0: from the radius
+        protected int max_candidates = 256;
+
+        // buckets, table t at [t * n, (t + 1) * n)
+        private long[] keys = new long[0];  // = (bucket hash << 32) | index, sorted
+        private int[] pos = new int[0];     // = where each index is in keys
+        private int[] start = new int[0], end = new int[0]; // = bucket of each position
+        private int n;
+
+        // candidates of one chromosome, deduplicated through stamps
+        protected int[] cand = new int[0];
+        protected double[] weight = new double[0];
+        private int[] mark = new int[0];
+        private int stamp;
+
+        protected Lsh( int radius )
+        {
+            this.radius = Math.max( 1, radius );
+        }
+
+        //
+        // accessor methods
+        //
+        public int getRadius() {return radius;}
+        public int getTables() {return tables;}
+        public void setTables( int t ) { tables = Math.max( 1, t ); }
+        public int getSampleBits() {return sample_bits;}
+        public void setSampleBits( int k ) { sample_bits = Math.min( 64, Math.max( 0, k ) ); }
+        public int getMaxCandidates() {return max_candidates;}
+        public void setMaxCandidates( int m ) { max_candidates = Math.max( 1, m ); }
+
+        //
+        // utility methods
+        //
+
+        // hashes the first <n> chromosomes of <population> into the tables
+        protected void bucket( Chromosome[] population, int n, RandomSource rng )
+        {
+            this.n = n;
+            int size = tables * n;
+            if (keys.length < size)
+            {
+                keys = new long[size];
+                pos = new int[size];
+                start = new int[size];
+                end = new int[size];
+            }
+            if (mark.length < n) mark = new int[n];
+            else Arrays.fill( mark, 0, n, 0 );
+            stamp = 0;
+            int per_table = Math.max( 1, max_candidates / tables );
+            if (cand.length < per_table * tables)
+            {
+                cand = new int[per_table * tables];
+                weight = new double[per_table * tables];
+            }
+            if (n == 0) return;
+
+            int n_bits = population[0].n_bits;
+            int k = sampleBits( n_bits );
+            int[] loci = new int[k];
+            for (int t = 0; t < tables; t++)
+            {
+                int off = t * n;
+                for (int b = 0; b < k; b++) loci[b] = rng.nextInt( n_bits );
+                long salt = rng.nextLong();
+                for (int i = 0; i < n; i++)
+                {
+                    BitString chr = population[i];
+                    long key = 0;
+                    for (int b = 0; b < k; b++) key = (key << 1) | chr.getBit( loci[b] );
+                    keys[off + i] = (mix( key ^ salt ) & 0xffffffff00000000L) | i;
+                }
+                Arrays.sort( keys, off, off + n );
+
+                // bucket bounds and positions
+                for (int p = 0, s = 0; p < n; p++)
+                {
+                    pos[off + (int)keys[off + p]] = p;
+                    if (p + 1 == n || (keys[off + p + 1] >>> 32) != (keys[off + p] >>> 32))
+                    {
+                        for (int q = s; q <= p; q++)
+                        {
+                            start[off + q] = s;
+                            end[off + q] = p + 1;
+                        }
+                        s = p + 1;
+                    }
+                }
+            }
+        }
+
+        // gathers the chromosomes sharing a bucket with <i> into cand[],
+        // each weighted by 1 / the chance it had to be gathered (1 unless
+        // some bucket was too big to take whole), so that a weighted sum
+        // over the candidates estimates the sum over all bucket mates
+        // returns how many there are
+        protected int candidates( int i, RandomSource rng )
+        {
+            int per_table = Math.max( 1, max_candidates / tables );
+            mark[i] = ++stamp;
+            int count = 0;
+            boolean sampled = false;
+            for (int t = 0; t < tables; t++)
+            {
+                int off = t * n, p = pos[off + i];
+                int s = start[off + p], size = end[off + p] - s;
+                int others = size - 1;
+                if (others <= 0) continue;
+                int take = Math.min( others, per_table );
+                sampled |= take < others;
+                int first = take < others ? rng.nextInt( size ) : 0;
+                for (int q = 0, taken = 0; taken < take; q++)
+                {
+                    int j = (int)keys[off + s + (first + q) % size];
+                    if (j == i) continue;
+                    taken++;
+                    if (mark[j] == stamp) continue;
+                    mark[j] = stamp;
+                    cand[count++] = j;
+                }
+            }
+            for (int q = 0; q < count; q++)
+            {
+                weight[q] = 1.0;
+                if (!sampled) continue;
+
+                // missed by every table whose bucket it shares with i
+                int j = cand[q];
+                double miss = 1.0;
+                for (int t = 0; t < tables; t++)
+                {
+                    int off = t * n, p = pos[off + i];
+                    if (start[off + pos[off + j]] != start[off + p]) continue;
+                    int others = end[off + p] - start[off + p] - 1;
+                    miss *= 1.0 - (double)Math.min( others, per_table ) / others;
+                }
+                weight[q] = 1.0 / (1.0 - miss);
+            }
+            return count;
+        }
+
+        // loci per key: given, or such that chromosomes <radius> bits
+        // apart share a key half of the time
+        protected int sampleBits( int n_bits )
+        {
+            if (sample_bits > 0) return sample_bits;
+            if (radius >= n_bits) return 1;
+            double k = Math.log( 0.5 ) / Math.log( 1.0 - (double)radius / n_bits );
+            return (int)Math.min( 64, Math.max( 1, Math.round( k ) ) );
+        }
+
+        // the lowest fitness, or 0 if none is negative
+        protected static double floor( double[] fitness, int n )
+        {
+            double min = 0;
+            for (int i = 0; i < n; i++)
+            {
+                if (fitness[i] < min) min = fitness[i];
+            }
+            return min;
+        }
+
+        // SplitMix64 finalizer
+        private static long mix( long z )
+        {
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            return z ^ (z >>> 31);
+        }
+    }
+
+    // fitness sharing: each fitness is divided by its niche count
+    // m_i = sum_j sh(d_ij), sh(d) = 1 - (d / radius)^alpha below the
+    // radius and 0 above it (sh(0) = 1 counts the chromosome itself)
+    // negative fitness is shifted up first, as in Selection.Roulette
+    public static class Sharing extends Lsh
+    {
+        protected double alpha;
+
+        public Sharing( int radius )
+        {
+            this( radius, 1.0 );
+        }
+
+        public Sharing( int radius, double alpha )
+        {
+            super( radius );
+            this.alpha = alpha > 0 ? alpha : 1.0;
+        }
+
+        @Override
+        public void apply( Chromosome[] population, double[] fitness, int[] order, int n,
+                double[] out, RandomSource rng )
+        {
+            bucket( population, n, rng );
+            double min = floor( fitness, n );
+            for (int i = 0; i < n; i++)
+            {
+                double f = fitness[i];
+                if (f != f) { out[i] = f; continue; }
+
+                double m = 1;
+                Chromosome chr = population[i];
+                for (int q = 0, c = candidates( i, rng ); q < c; q++)
+                {
+                    int d = chr.hammingDistance( population[cand[q]] );
+                    if (d >= radius) continue;
+                    double x = (double)d / radius;
+                    m += weight[q] * (1 - (alpha == 1.0 ? x : Math.pow( x, alpha )));
+                }
+                out[i] = (f - min) / m;
+            }
+        }
+    }
+
+    // clearing: going from most to least fit, the <capacity> fittest
+    // of each niche keep their fitness and the rest of it is cleared
+    // to the lowest fitness (0 unless some fitness is negative)
+    public static class Clearing extends Lsh
+    {
+        protected int capacity;
+        private boolean[] cleared = new boolean[0];
+        private int[] rank = new int[0];
+
+        public Clearing( int radius )
+        {
+            this( radius, 1 );
+        }
+
+        public Clearing( int radius, int capacity )
+        {
+            super( radius );
+            this.capacity = Math.max( 1, capacity );
+        }
+
+        @Override
+        public void apply( Chromosome[] population, double[] fitness, int[] order, int n,
+                double[] out, RandomSource rng )
+        {
+            bucket( population, n, rng );
+            if (cleared.length < n)
+            {
+                cleared = new boolean[n];
+                rank = new int[n];
+            }
+            else Arrays.fill( cleared, 0, n, false );
+            for (int r = 0; r < n; r++) rank[order[r]] = r;
+            System.arraycopy( fitness, 0, out, 0, n );
+            double low = floor( fitness, n );
+
+            for (int r = 0; r < n; r++)
+            {
+                int i = order[r];
+                if (cleared[i] || fitness[i] != fitness[i]) continue;
+
+                // i wins its niche: keep capacity - 1 more, clear the rest
+                int winners = 1;
+                Chromosome chr = population[i];
+                for (int q = 0, c = candidates( i, rng ); q < c; q++)
+                {
+                    int j = cand[q];
+                    if (cleared[j] || rank[j] < r) continue;
+                    if (chr.hammingDistance( population[j] ) >= radius) continue;
+                    if (winners < capacity) winners++;
+                    else
+                    {
+                        cleared[j] = true;
+                        out[j] = low;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+//===========================================================
+// title = NichingStrategy.java
+// by = Brian Kim
+// description = turns the fitness of a population into the
+//  fitness selection should see, so that crowded regions of
+//  the search space are worth less than lonely ones
+//
+// notes:
+// - Generation.evolve() calls apply() once per generation,
+//    after rating and ranking and before selection; elitism,
+//    the most fit, the history and the metrics still see the
+//    raw fitness
+// - implementations live in Niching
+//===========================================================
+
+package geneticalgorithm;
+
+public interface NichingStrategy
+{
+    // fills <out> with the niched fitness of the first <n> chromosomes
+    // of <population>, rated with <fitness>, <order> being their
+    // indicies from most to least fit
+    void apply( Chromosome[] population, double[] fitness, int[] order, int n,
+            double[] out, RandomSource rng );
+}
@@ -0,0 +1,249 @@
+//===========================================================
+// title = PipelinedEvolution.java
+// by = Brian Kim
+// description = evolves a generation without generation
+//  boundaries: children are bred and rated at the same time,
+//  on different threads
+//
+// notes:
+// - the calling thread breeds children (selection, crossover,
+//    mutation) and puts them on a bounded work queue; evaluator
+//    threads take them off, rate them, and hand them back
+// - each rated child replaces the least fit chromosome as soon
+//    as it comes back, if it is at least as fit, so there is no
+//    barrier at which every thread waits for the slowest rating
+// - only the breeding thread touches the population, so nothing
+//    is locked; the queue capacity bounds the children in flight
+//    (and so how stale the parents of a child can be)
+// - every population_size returned children count as one
+//    generation (getCount()); the selection strategy is prepared
+//    again at each of them (without one, the original loop
+//    becomes a binary tournament)
+// - a fitness function that is not thread-safe is only ever
+//    called from one evaluator thread
+// - an alternative to GeneticAlgorithm.evolve(): see
+//    GeneticAlgorithm.evolvePipelined()
+//===========================================================
+
+package geneticalgorithm;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class PipelinedEvolution
+{
+    //
+    // properties (instance variables)
+    //
+    protected Generation gen;
+    protected int n_threads;
+    protected int capacity; // = most children waiting to be rated
+
+    // children on their way to and from the evaluator threads
+    protected BlockingQueue<Chromosome> work;
+    protected BlockingQueue<Rated> rated = new LinkedBlockingQueue<Rated>();
+
+    // tells an evaluator thread to finish
+    private static final Chromosome POISON = new Chromosome( new Encodable[0] );
+
+    // breeding state, owned by the thread in run()
+    protected SelectionStrategy selection;
+    protected int[] order;
+    protected long evaluations;
+    protected double best_fit = Double.NEGATIVE_INFINITY;
+    
+    // what gen.getEvaluations() and the cache misses were at the start,
+    // so that only fitness function calls are counted, as rate() does
+    private FitnessCache cache;
+    private long start_evaluations, start_misses;
+
+    protected final AtomicBoolean done = new AtomicBoolean();
+    protected volatile Throwable failure;
+
+    //
+    // constructors
+    //
+    public PipelinedEvolution( Generation gen )
+    {
+        this( gen, Runtime.getRuntime().availableProcessors() );
+    }
+
+    public PipelinedEvolution( Generation gen, int threads )
+    {
+        this( gen, threads, 4 * Math.max( 1, threads ) );
+    }
+
+    public PipelinedEvolution( Generation gen, int threads, int capacity )
+    {
+        this.gen = gen;
+        this.n_threads = Math.max( 1, threads );
+        this.capacity = Math.max( 1, capacity );
+    }
+
+    //
+    // accessor methods
+    //
+    public Generation getGeneration() {return gen;}
+    public long getEvaluations() {return evaluations;}
+
+    // asks a running run() to return after the children in flight
+    public void stop() { done.set( true ); }
+
+    //
+    // important API
+    //
+
+    // breeds and rates children until <max_evaluations> have been rated
+    // or the most fit reaches <target_fitness>
+    // returns the most fit chromosome
+    public Chromosome run( long max_evaluations, double target_fitness )
+    {
+        done.set( false );
+        failure = null;
+        evaluations = 0;
+        if (!gen.isRated()) gen.rate();
+        cache = gen.fitness_cache;
+        start_evaluations = gen.evaluations;
+        start_misses = cache == null ? 0 : cache.getMisses();
+
+        // start from the most fit of the rated population
+        int n = gen.population_size;
+        order = gen.ranking.rank( gen.fitness );
+        best_fit = Double.NEGATIVE_INFINITY;
+        updateBest( gen.population[order[0]], gen.fitness[order[0]] );
+
+        // parents are picked among the population as it is now
+        selection = gen.parentSelection();
+        selection.prepare( gen.fitness, order, n, gen.rng );
+
+        final ChromosomeFitness<Chromosome> f = gen.rater();
+        int threads = f.isThreadSafe() ? n_threads : 1;
+        work = new ArrayBlockingQueue<Chromosome>( capacity + threads );
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++)
+        {
+            workers[i] = new Thread( () -> evaluate( f ), "ga-pipeline" );
+            workers[i].setDaemon( true );
+            workers[i].start();
+        }
+
+        long sent = 0;
+        try {
+            while (!done.get() && evaluations < max_evaluations && best_fit < target_fitness
+                    && failure == null)
+            {
+                // take in whatever has been rated
+                Rated r;
+                while ((r = rated.poll()) != null) insert( r );
+
+                if (sent < max_evaluations && sent - evaluations < capacity)
+                {
+                    // room for one more child
+                    work.offer( gen.offspring( selection, gen.fitness, null, null ) );
+                    sent++;
+                }
+                else
+                {
+                    // enough in flight: wait for a result
+                    r = rated.poll( 10, TimeUnit.MILLISECONDS );
+                    if (r != null) insert( r );
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // stop the evaluators, then take in the children in flight
+            for (int i = 0; i < threads; i++) work.offer( POISON );
+            for (Thread t : workers)
+            {
+                try {
+                    t.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            Rated r;
+            while ((r = rated.poll()) != null) insert( r );
+        }
+
+        if (failure != null)
+            throw new RuntimeException( "error: PipelinedEvolution: fitness function failed", failure );
+        return gen.most_fit;
+    }
+
+    //
+    // utility methods
+    //
+
+    // an evaluator thread: rates children until it takes the poison
+    private void evaluate( ChromosomeFitness<Chromosome> f )
+    {
+        try {
+            while (true)
+            {
+                Chromosome chr = work.take();
+                if (chr == POISON) return;
+                rated.offer( new Rated( chr, f.rate( chr ) ) );
+            }
+        } catch (InterruptedException e) {
+            // abandoned
+        } catch (Throwable e) {
+            failure = e;
+        }
+    }
+
+    // puts a rated child in place of the least fit, if it is at least as fit
+    // (a scan for the least fit: O(n), small next to a typical rating)
+    private void insert( Rated r )
+    {
+        int n = gen.population_size;
+        ++evaluations;
+        gen.evaluations = start_evaluations + (cache == null ? evaluations : cache.getMisses() - start_misses);
+        if (evaluations % n == 0)
+        {
+            // one generation's worth of children
+            gen.count++;
+            order = gen.ranking.rank( gen.fitness );
+            selection.prepare( gen.fitness, order, n, gen.rng );
+        }
+        
+        Chromosome chr = r.chr;
+        double f = r.fitness;
+        double[] fitness = gen.fitness;
+        int worst = 0;
+        for (int i = 1; i < gen.population_size; i++)
+        {
+            double w = fitness[worst], x = fitness[i];
+            if (x < w || (x != x && w == w)) worst = i;
+        }
+        if (f != f || f < fitness[worst]) return;
+
+        if (gen.store != null) gen.population[worst].copyFrom( chr );
+        else gen.population[worst] = chr;
+        fitness[worst] = f;
+        updateBest( gen.population[worst], f );
+    }
+
+    // a child and its fitness, on the way back from an evaluator
+    protected static final class Rated
+    {
+        final Chromosome chr;
+        final double fitness;
+        
+        Rated( Chromosome chr, double fitness )
+        {
+            this.chr = chr;
+            this.fitness = fitness;
+        }
+    }
+    
+    private void updateBest( Chromosome chr, double f )
+    {
+        if (gen.most_fit != null && !(f > best_fit)) return;
+        best_fit = f;
+        gen.setMostFit( gen.store != null ? gen.store.keepBest( chr ) : chr, f, true );
+    }
+}
@@ -0,0 +1,122 @@
+//===========================================================
+// title = PopulationStore.java
+// by = Brian Kim
+// description = a class that keeps the genomes of a whole
+//  population in one contiguous array of words instead of one
+//  array per chromosome
+//
+// notes:
+// - genome i occupies words [i*n_words, (i+1)*n_words) of an
+//    arena; fitness values stay in Generation's parallel double[]
+// - there are two arenas: the current generation is read from
+//    one while the next is written into the other, then swap()
+//    flips them, so evolving allocates no genomes at all
+// - each slot of each arena has one Chromosome view bound to it
+//    (see BitString.bind()); the views are created once and are
+//    clones of the original population, so they keep its subclass
+// - a view's bits are overwritten two generations later: copy
+//    a chromosome (clone()) to keep it around longer
+// - all chromosomes must have the same number of bits
+//===========================================================
+
+package geneticalgorithm;
+
+public class PopulationStore
+{
+    //
+    // properties (instance variables)
+    //
+    protected int size;    // = number of genomes per arena
+    protected int n_bits;  // = bits per genome
+    protected int n_words; // = words per genome
+
+    // the two arenas and their views
+    protected long[] current, next;
+    protected Chromosome[] current_views, next_views;
+
+    // a stable copy of the most fit chromosome (see keepBest())
+    protected Chromosome best;
+
+    //
+    // constructors
+    //
+
+    // a store holding a copy of <population>
+    public PopulationStore( Chromosome[] population )
+    {
+        size = population.length;
+        n_bits = population[0].n_bits;
+        n_words = population[0].n_words;
+        current = new long[size * n_words];
+        next = new long[size * n_words];
+        current_views = new Chromosome[size];
+        next_views = new Chromosome[size];
+
+        for (int i = 0; i < size; i++)
+        {
+            Chromosome chr = population[i];
+            if (chr.n_bits != n_bits)
+                throw new IllegalArgumentException( "PopulationStore: chromosome " + i
+                        + " has " + chr.n_bits + " bits, expected " + n_bits );
+
+            // copy the genome into the current arena and keep its fitness
+            System.arraycopy( chr.words, chr.base, current, i * n_words, n_words );
+            Chromosome view = (Chromosome)chr.clone();
+            view.bind( current, i * n_words );
+            view.cached = chr.cached;
+            current_views[i] = view;
+
+            view = (Chromosome)chr.clone();
+            view.bind( next, i * n_words );
+            next_views[i] = view;
+        }
+    }
+
+    //
+    // accessor methods
+    //
+    public int size() {return size;}
+    public int n_words() {return n_words;}
+
+    // views of the current generation
+    public Chromosome[] current() {return current_views;}
+
+    // views of the generation being built
+    public Chromosome[] next() {return next_views;}
+
+    // the current arena: genome i starts at word offset(i)
+    // (shared, not a copy)
+    public long[] getGenomes() {return current;}
+    public int offset( int i ) {return i * n_words;}
+
+    //
+    // important API
+    //
+
+    // makes the next generation current
+    public void swap()
+    {
+        long[] t = current; current = next; next = t;
+        Chromosome[] v = current_views; current_views = next_views; next_views = v;
+    }
+
+    // copies <chr> into a chromosome that is not part of either arena
+    // and returns that copy
+    public Chromosome keepBest( Chromosome chr )
+    {
+        if (best == null) best = (Chromosome)chr.clone();
+        else best.copyFrom( chr );
+        return best;
+    }
+
+    // standalone copies of the current generation
+    public Chromosome[] detach()
+    {
+        Chromosome[] y = new Chromosome[size];
+        for (int i = 0; i < size; i++)
+        {
+            y[i] = (Chromosome)current_views[i].clone();
+        }
+        return y;
+    }
+}
@@ -0,0 +1,154 @@
+//===========================================================
+// title = RandomSource.java
+// by = Brian Kim
+// description = a seeded, splittable random number generator
+//  used for every random decision in the genetic algorithm
+//
+// notes:
+// - implemented as SplitMix64 (the algorithm behind
+//    java.util.SplittableRandom): a 64 bit counter stepped by
+//    an odd gamma and passed through a mixing function
+// - the same seed always gives the same sequence, so a run
+//    seeded through Generation can be reproduced exactly
+// - NOT thread-safe: give each thread its own stream with
+//    split(), or use current() for a per-thread default
+// - the whole state is two longs (getState()/getGamma()),
+//    which makes it cheap to checkpoint and restore
+//===========================================================
+
+package geneticalgorithm;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RandomSource
+{
+    //
+    // properties (instance variables)
+    //
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    // seeds generators that were not given a seed
+    private static final AtomicLong seeder =
+            new AtomicLong( mix64( System.currentTimeMillis() ) ^ mix64( System.nanoTime() ) );
+
+    // per-thread default streams
+    private static final ThreadLocal<RandomSource> local =
+            ThreadLocal.withInitial( RandomSource::new );
+
+    private long seed;  // = current counter value
+    private long gamma; // = odd step added to seed on every draw
+
+    //
+    // constructors
+    //
+
+    // unseeded: a different sequence every time
+    public RandomSource()
+    {
+        this( seeder.getAndAdd( 2 * GOLDEN_GAMMA ) );
+    }
+
+    // seeded: the same sequence for the same seed
+    public RandomSource( long seed )
+    {
+        this( seed, GOLDEN_GAMMA );
+    }
+
+    // restores a generator from getState() and getGamma()
+    public RandomSource( long state, long gamma )
+    {
+        this.seed = state;
+        this.gamma = gamma | 1L;
+    }
+
+    //
+    // accessor methods
+    //
+    public long getState() {return seed;}
+    public long getGamma() {return gamma;}
+
+    // the calling thread's default stream
+    public static RandomSource current()
+    {
+        return local.get();
+    }
+
+    //
+    // important API
+    //
+
+    // a new, statistically independent generator; the sequence of
+    // generators split from a seeded source is itself reproducible
+    public RandomSource split()
+    {
+        return new RandomSource( mix64( nextSeed() ), mixGamma( nextSeed() ) );
+    }
+
+    public long nextLong()
+    {
+        return mix64( nextSeed() );
+    }
+
+    public int nextInt()
+    {
+        return (int)(mix64( nextSeed() ) >>> 32);
+    }
+
+    // uniform in [0, bound), bound > 0
+    public int nextInt( int bound )
+    {
+        // Lemire's multiply-and-reject: unbiased, usually one draw
+        long m = (nextLong() >>> 32) * bound;
+        long low = m & 0xffffffffL;
+        if (low < bound)
+        {
+            long threshold = (0x100000000L - bound) % bound;
+            while (low < threshold)
+            {
+                m = (nextLong() >>> 32) * bound;
+                low = m & 0xffffffffL;
+            }
+        }
+        return (int)(m >>> 32);
+    }
+
+    // uniform in [0, 1)
+    public double nextDouble()
+    {
+        return (nextLong() >>> 11) * DOUBLE_UNIT;
+    }
+
+    public boolean nextBoolean()
+    {
+        return nextLong() < 0;
+    }
+
+    //
+    // utility methods
+    //
+
+    private long nextSeed()
+    {
+        return seed += gamma;
+    }
+
+    // David Stafford's variant 13 finalizer
+    private static long mix64( long z )
+    {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    // picks a well-mixed odd gamma for a split generator
+    private static long mixGamma( long z )
+    {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        int n = Long.bitCount( z ^ (z >>> 1) );
+        return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+    }
+}
@@ -0,0 +1,183 @@
+//===========================================================
+// title = Ranking.java
+// by = Brian Kim
+// description = a class that ranks a population by fitness,
+//  producing an array of indicies ordered from most fit to
+//  least fit
+//
+// notes:
+// - sorting is a stable merge sort over primitive int indicies,
+//    O(n log n), and allocates nothing once its buffers exist
+// - ties keep their original order (lower index first)
+// - any real fitness value is allowed, including negatives;
+//    NaN ranks below everything else
+// - topK() ranks only the k most fit individuals in O(n log k),
+//    which is all that elitism or truncation needs
+//===========================================================
+
+package geneticalgorithm;
+
+public class Ranking
+{
+    //
+    // properties (instance variables)
+    //
+
+    // runs shorter than this are sorted by insertion
+    private static final int INSERTION_RUN = 16;
+
+    // reusable buffers: the ranked indicies and merge scratch space
+    protected int[] order = new int[0];
+    protected int[] scratch = new int[0];
+
+    //
+    // important API
+    //
+
+    // ranks <fitnesses> into an internal buffer and returns it
+    // the returned array is reused by the next call to rank()
+    public int[] rank( double[] fitnesses )
+    {
+        int n = fitnesses.length;
+        if (order.length != n)
+        {
+            order = new int[n];
+            scratch = new int[n];
+        }
+        rank( fitnesses, order, scratch );
+        return order;
+    }
+
+    // ranks <fitnesses> into <out> using <scratch> as merge space
+    // both arrays must be at least fitnesses.length long
+    public static void rank( double[] fitnesses, int[] out, int[] scratch )
+    {
+        int n = fitnesses.length;
+        for (int i = 0; i < n; i++) out[i] = i;
+        if (n < 2) return;
+
+        // sort short runs in place
+        for (int lo = 0; lo < n; lo += INSERTION_RUN)
+        {
+            insertionSort( fitnesses, out, lo, Math.min( lo + INSERTION_RUN, n ) );
+        }
+
+        // bottom-up merge, bouncing between out and scratch
+        int[] src = out, dst = scratch;
+        for (int width = INSERTION_RUN; width < n; width *= 2)
+        {
+            for (int lo = 0; lo < n; lo += 2 * width)
+            {
+                int mid = Math.min( lo + width, n );
+                int hi = Math.min( lo + 2 * width, n );
+                merge( fitnesses, src, dst, lo, mid, hi );
+            }
+            int[] t = src; src = dst; dst = t;
+        }
+        if (src != out) System.arraycopy( src, 0, out, 0, n );
+    }
+
+    // fills out[0, k) with the indicies of the k most fit individuals,
+    // most fit first; returns the number of indicies written (min(k, n))
+    public static int topK( double[] fitnesses, int k, int[] out )
+    {
+        int n = fitnesses.length;
+        if (k > n) k = n;
+        if (k <= 0) return 0;
+
+        // out[0, k) is kept as a heap whose root is the least fit
+        // of the best k seen so far
+        for (int i = 0; i < k; i++)
+        {
+            out[i] = i;
+            siftUp( fitnesses, out, i );
+        }
+        for (int i = k; i < n; i++)
+        {
+            if (before( fitnesses, i, out[0] ))
+            {
+                out[0] = i;
+                siftDown( fitnesses, out, 0, k );
+            }
+        }
+
+        // heap sort: repeatedly move the least fit to the back
+        for (int end = k - 1; end > 0; end--)
+        {
+            int t = out[0]; out[0] = out[end]; out[end] = t;
+            siftDown( fitnesses, out, 0, end );
+        }
+        return k;
+    }
+
+    //
+    // utility methods
+    //
+
+    // true if index a ranks strictly before index b
+    protected static boolean before( double[] f, int a, int b )
+    {
+        double x = f[a], y = f[b];
+        if (x > y) return true;
+        if (x == y) return a < b;
+        // NaN goes last, in index order
+        if (y != y) return x == x || a < b;
+        return false;
+    }
+
+    private static void insertionSort( double[] f, int[] a, int lo, int hi )
+    {
+        for (int i = lo + 1; i < hi; i++)
+        {
+            int v = a[i];
+            int j = i - 1;
+            while (j >= lo && before( f, v, a[j] ))
+            {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = v;
+        }
+    }
+
+    private static void merge( double[] f, int[] src, int[] dst, int lo, int mid, int hi )
+    {
+        int i = lo, j = mid, k = lo;
+        while (i < mid && j < hi)
+        {
+            // take from the right run only if it is strictly better,
+            // so equal elements keep their order
+            dst[k++] = before( f, src[j], src[i] ) ? src[j++] : src[i++];
+        }
+        while (i < mid) dst[k++] = src[i++];
+        while (j < hi) dst[k++] = src[j++];
+    }
+
+    private static void siftUp( double[] f, int[] h, int i )
+    {
+        int v = h[i];
+        while (i > 0)
+        {
+            int parent = (i - 1) >>> 1;
+            if (!before( f, h[parent], v )) break;
+            h[i] = h[parent];
+            i = parent;
+        }
+        h[i] = v;
+    }
+
+    private static void siftDown( double[] f, int[] h, int i, int size )
+    {
+        int v = h[i];
+        while (true)
+        {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && before( f, h[child], h[child + 1] )) child++;
+            if (!before( f, v, h[child] )) break;
+            h[i] = h[child];
+            i = child;
+        }
+        h[i] = v;
+    }
+}
@@ -0,0 +1,278 @@
+//===========================================================
+// title = Selection.java
+// by = Brian Kim
+// description = the selection strategies a generation can
+//  breed with (see Generation.setSelection())
+//
+// notes:
+// - costs per generation of n chromosomes, for n selections:
+//     Tournament      O(n k)
+//     Roulette        O(n) to build an alias table, O(1) per draw
+//     Rank            O(n) (on the existing ranking), O(1) per draw
+//     Stochastic      O(n) per n selections
+//     Truncation      O(1) per draw
+// - fitness-proportional strategies (Roulette, Stochastic) shift
+//    the weights up when some fitness is negative and give NaN
+//    a weight of 0; if every weight is 0 they pick uniformly
+// - every strategy reuses its buffers between generations
+// - with no strategy set (the default), Generation.evolve() keeps
+//    its original loop: each chromosome in ranked order is kept,
+//    and every later one that passes a random test against its
+//    fitness is kept and bred with it
+//===========================================================
+
+package geneticalgorithm;
+
+public class Selection
+{
+    // the fittest of <k> chromosomes drawn at random
+    public static class Tournament implements SelectionStrategy
+    {
+        protected int k;
+        private double[] fitness;
+        private int n;
+
+        public Tournament( int k )
+        {
+            this.k = Math.max( 1, k );
+        }
+
+        @Override
+        public void prepare( double[] fitness, int[] order, int n, RandomSource rng )
+        {
+            this.fitness = fitness;
+            this.n = n;
+        }
+
+        @Override
+        public int select( RandomSource rng )
+        {
+            int best = rng.nextInt( n );
+            for (int i = 1; i < k; i++)
+            {
+                int c = rng.nextInt( n );
+                double f = fitness[c], b = fitness[best];
+                if (f > b || (b != b && f == f)) best = c;
+            }
+            return best;
+        }
+    }
+
+    // fitness-proportional (roulette wheel) selection through
+    // Vose's alias method: O(n) setup, then O(1) per draw
+    public static class Roulette implements SelectionStrategy
+    {
+        protected double[] weight = new double[0];
+        private double[] prob = new double[0];
+        private int[] alias = new int[0];
+        private int[] small = new int[0], large = new int[0];
+        protected int[] order;
+        protected int n;
+
+        @Override
+        public void prepare( double[] fitness, int[] order, int n, RandomSource rng )
+        {
+            this.order = order;
+            this.n = n;
+            ensure( n );
+            weights( fitness, order, n );
+            build();
+        }
+
+        @Override
+        public int select( RandomSource rng )
+        {
+            int i = rng.nextInt( n );
+            return rng.nextDouble() < prob[i] ? index( i ) : index( alias[i] );
+        }
+
+        // the chromosome behind slot i of the table
+        protected int index( int i )
+        {
+            return i;
+        }
+
+        // fills weight[0, n) (fitness proportional)
+        protected void weights( double[] fitness, int[] order, int n )
+        {
+            shiftedWeights( fitness, n, weight );
+        }
+
+        protected void ensure( int n )
+        {
+            if (weight.length >= n) return;
+            weight = new double[n];
+            prob = new double[n];
+            alias = new int[n];
+            small = new int[n];
+            large = new int[n];
+        }
+
+        // builds prob[] and alias[] out of weight[]
+        private void build()
+        {
+            double total = 0;
+            for (int i = 0; i < n; i++) total += weight[i];
+
+            int n_small = 0, n_large = 0;
+            for (int i = 0; i < n; i++)
+            {
+                // scaled so that the average is 1
+                prob[i] = total > 0 ? weight[i] * n / total : 1.0;
+                alias[i] = i;
+                if (prob[i] < 1.0) small[n_small++] = i;
+                else large[n_large++] = i;
+            }
+            while (n_small > 0 && n_large > 0)
+            {
+                int s = small[--n_small], l = large[--n_large];
+                alias[s] = l;
+                prob[l] = (prob[l] + prob[s]) - 1.0;
+                if (prob[l] < 1.0) small[n_small++] = l;
+                else large[n_large++] = l;
+            }
+            // leftovers are 1 up to rounding
+            while (n_large > 0) prob[large[--n_large]] = 1.0;
+            while (n_small > 0) prob[small[--n_small]] = 1.0;
+        }
+    }
+
+    // linear ranking: the most fit gets weight <pressure>, the least
+    // fit 2 - <pressure>, whatever the fitness values are
+    // (pressure in [1, 2], 1 = uniform)
+    public static class Rank extends Roulette
+    {
+        protected double pressure;
+
+        public Rank( double pressure )
+        {
+            this.pressure = Math.min( 2.0, Math.max( 1.0, pressure ) );
+        }
+
+        @Override
+        protected void weights( double[] fitness, int[] order, int n )
+        {
+            for (int r = 0; r < n; r++)
+            {
+                weight[r] = n < 2 ? 1.0 : (2 - pressure) + 2 * (pressure - 1) * (n - 1 - r) / (n - 1);
+            }
+        }
+
+        // slot r of the table is the chromosome of rank r
+        @Override
+        protected int index( int r )
+        {
+            return order[r];
+        }
+    }
+
+    // stochastic universal sampling: every n selections come from one
+    // spin of a wheel with n evenly spaced pointers, so each
+    // chromosome is picked within one of its expected count; the
+    // wheel is spun again once those n are used up (two parents per
+    // child need 2n)
+    public static class StochasticUniversal implements SelectionStrategy
+    {
+        private double[] weight = new double[0];
+        private int[] picks = new int[0];
+        private double total;
+        private int n, next;
+
+        @Override
+        public void prepare( double[] fitness, int[] order, int n, RandomSource rng )
+        {
+            this.n = n;
+            if (weight.length < n)
+            {
+                weight = new double[n];
+                picks = new int[n];
+            }
+            total = shiftedWeights( fitness, n, weight );
+            if (!(total > 0))
+            {
+                for (int i = 0; i < n; i++) weight[i] = 1.0;
+                total = n;
+            }
+            spin( rng );
+        }
+
+        @Override
+        public int select( RandomSource rng )
+        {
+            if (next == n) spin( rng );
+            return picks[next++];
+        }
+
+        // n picks from one spin, shuffled so that consecutive parents
+        // are not neighbours
+        private void spin( RandomSource rng )
+        {
+            next = 0;
+            double step = total / n;
+            double pointer = rng.nextDouble() * step;
+            double sum = weight[0];
+            int i = 0;
+            for (int p = 0; p < n; p++)
+            {
+                while (sum <= pointer && i < n - 1) sum += weight[++i];
+                picks[p] = i;
+                pointer += step;
+            }
+            for (int p = n - 1; p > 0; p--)
+            {
+                int q = rng.nextInt( p + 1 );
+                int t = picks[p]; picks[p] = picks[q]; picks[q] = t;
+            }
+        }
+    }
+
+    // uniform among the most fit <fraction> of the population
+    public static class Truncation implements SelectionStrategy
+    {
+        protected double fraction;
+        private int[] order;
+        private int top;
+
+        public Truncation( double fraction )
+        {
+            this.fraction = Math.min( 1.0, Math.max( 0.0, fraction ) );
+        }
+
+        @Override
+        public void prepare( double[] fitness, int[] order, int n, RandomSource rng )
+        {
+            this.order = order;
+            this.top = Math.max( 1, Math.min( n, (int)Math.ceil( fraction * n ) ) );
+        }
+
+        @Override
+        public int select( RandomSource rng )
+        {
+            return order[rng.nextInt( top )];
+        }
+    }
+
+    //
+    // utility methods
+    //
+
+    // fitness as non-negative weights into <weight>: NaN counts 0, and
+    // everything is shifted up when the lowest fitness is negative
+    // returns the total weight
+    static double shiftedWeights( double[] fitness, int n, double[] weight )
+    {
+        double min = 0;
+        for (int i = 0; i < n; i++)
+        {
+            if (fitness[i] < min) min = fitness[i];
+        }
+        double total = 0;
+        for (int i = 0; i < n; i++)
+        {
+            double f = fitness[i];
+            weight[i] = f == f ? f - min : 0;
+            total += weight[i];
+        }
+        return total;
+    }
+}
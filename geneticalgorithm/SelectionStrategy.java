@@ -0,0 +1,23 @@
+//===========================================================
+// title = SelectionStrategy.java
+// by = Brian Kim
+// description = picks the parents of the next generation
+//
+// notes:
+// - Generation.evolve() calls prepare() once per generation,
+//    after ranking, then select() once per parent it needs
+// - implementations live in Selection; with none set (the
+//    default), evolve() keeps its original selection loop
+//===========================================================
+
+package geneticalgorithm;
+
+public interface SelectionStrategy
+{
+    // gets ready to select among <n> chromosomes rated with <fitness>,
+    // <order> being their indicies from most to least fit
+    void prepare( double[] fitness, int[] order, int n, RandomSource rng );
+
+    // the index of the next selected parent
+    int select( RandomSource rng );
+}
@@ -0,0 +1,24 @@
+//===========================================================
+// title = SerialEvaluator.java
+// by = Brian Kim
+// description = an evaluator that rates the population one
+//  chromosome at a time on the calling thread (the default)
+//===========================================================
+
+package geneticalgorithm;
+
+public class SerialEvaluator implements Evaluator
+{
+    @Override
+    public void evaluate( ChromosomeFitness<Chromosome> ff, Chromosome[] population, 
+            double[] fitness, int from, int to )
+    {
+        for (int i = from; i < to; i++)
+        {
+            fitness[i] = ff.rate( population[i] );
+        }
+    }
+    
+    @Override
+    public void shutdown() {}
+}
@@ -0,0 +1,490 @@
+//===========================================================
+// title = SocketMigrationTransport.java
+// by = Brian Kim
+// description = moves migrating chromosomes between islands
+//  that live in different processes, over TCP or Unix domain
+//  sockets
+//
+// notes:
+// - one transport per process: it listens on its own address,
+//    connects to the addresses of its peers, and runs a single
+//    selector thread over non-blocking NIO channels, so send()
+//    and receive() never block the evolving thread
+// - wire format (big endian), one frame per send():
+//     int   frame length in bytes (excluding this int)
+//     int   MAGIC
+//     int   n_bits
+//     int   count
+//     count x long[n_words] packed words
+//    a frame whose length does not match its count and n_bits, or
+//    that does not match the template, closes that connection
+// - frames are built in direct buffers with bulk long copies
+//    straight from (and, on arrival, into) the chromosomes' word
+//    arrays, with no String or per-bit conversion
+// - arriving chromosomes are clones of a template chromosome
+//    whose bits are overwritten, so they keep its subclass; the
+//    receiver rates them itself (gen.immigrate()), so no fitness
+//    travels with them
+// - a peer that cannot be reached, or whose connection breaks,
+//    is reconnected in the background, waiting RETRY_MIN_MILLIS
+//    and doubling up to RETRY_MAX_MILLIS between attempts; a frame
+//    cut off by the break is sent again from its start
+// - each peer queues at most MAX_QUEUED frames: send() drops the
+//    frame when the queue is full (see isConnected(), getDropped())
+// - Unix domain addresses (UnixDomainSocketAddress) need Java 16+
+//===========================================================
+
+package geneticalgorithm;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SocketMigrationTransport implements AutoCloseable
+{
+    //
+    // properties (instance variables)
+    //
+
+    // first int of every frame
+    public static final int MAGIC = 0x47414d31; // "GAM1"
+
+    // largest frame accepted from a peer
+    public static final int MAX_FRAME = 256 << 20;
+
+    // most frames waiting to be sent to one peer
+    public static final int MAX_QUEUED = 64;
+
+    // wait between attempts to reach a peer
+    public static final long RETRY_MIN_MILLIS = 100, RETRY_MAX_MILLIS = 10000;
+
+    // one connection and its buffers
+    protected static class Connection
+    {
+        final SocketAddress address; // = where to reconnect (null = accepted)
+        SocketChannel channel;       // = null while waiting to reconnect
+        volatile boolean connected;
+        int failures;                // = attempts failed in a row
+        long retry_at;               // = System.nanoTime() of the next attempt
+        final AtomicLong dropped = new AtomicLong();
+        final BlockingQueue<ByteBuffer> outgoing = new ArrayBlockingQueue<ByteBuffer>( MAX_QUEUED );
+        ByteBuffer incoming = ByteBuffer.allocateDirect( 64 << 10 );
+
+        Connection( SocketAddress address, SocketChannel channel )
+        {
+            this.address = address;
+            this.channel = channel;
+        }
+    }
+
+    protected Chromosome template;
+    protected Selector selector;
+    protected ServerSocketChannel server;
+    protected Thread io_thread;
+    protected volatile boolean closed;
+
+    // connections this transport opened, in connect() order (send targets)
+    protected final List<Connection> peers = new ArrayList<Connection>();
+
+    // chromosomes received from any connection
+    protected final ConcurrentLinkedQueue<Chromosome[]> arrivals = new ConcurrentLinkedQueue<Chromosome[]>();
+
+    // connections waiting to be opened (by the selector thread)
+    protected final ConcurrentLinkedQueue<Connection> pending = new ConcurrentLinkedQueue<Connection>();
+
+    // peers waiting to reconnect (selector thread only)
+    private final List<Connection> retrying = new ArrayList<Connection>();
+
+    //
+    // constructors
+    //
+
+    // listens on <address>; received chromosomes are clones of <template>
+    public SocketMigrationTransport( SocketAddress address, Chromosome template ) throws IOException
+    {
+        this.template = template;
+        this.selector = Selector.open();
+        this.server = address instanceof UnixDomainSocketAddress
+                ? ServerSocketChannel.open( StandardProtocolFamily.UNIX )
+                : ServerSocketChannel.open();
+        this.server.bind( address );
+        this.server.configureBlocking( false );
+        this.server.register( selector, SelectionKey.OP_ACCEPT );
+
+        this.io_thread = new Thread( this::ioLoop, "ga-migration" );
+        this.io_thread.setDaemon( true );
+        this.io_thread.start();
+    }
+
+    //
+    // accessor methods
+    //
+
+    // the address this transport listens on (useful after binding port 0)
+    public SocketAddress getLocalAddress() throws IOException
+    {
+        return server.getLocalAddress();
+    }
+
+    // number of peers connected to with connect()
+    public int peers()
+    {
+        synchronized (peers) { return peers.size(); }
+    }
+
+    // whether peer <peer> is connected right now
+    public boolean isConnected( int peer )
+    {
+        return peer( peer ).connected;
+    }
+
+    // frames dropped because the queue of peer <peer> was full
+    public long getDropped( int peer )
+    {
+        return peer( peer ).dropped.get();
+    }
+
+    //
+    // important API
+    //
+
+    // starts connecting to another transport, in the background (and
+    // again whenever the connection is lost); returns its peer index
+    public int connect( SocketAddress address )
+    {
+        Connection c = new Connection( address, null );
+        int index;
+        synchronized (peers)
+        {
+            peers.add( c );
+            index = peers.size() - 1;
+        }
+        pending.offer( c );
+        selector.wakeup();
+        return index;
+    }
+
+    // queues <migrants> for peer <peer>; never blocks
+    // returns false if the queue was full and they were dropped
+    public boolean send( int peer, Chromosome[] migrants )
+    {
+        Connection c = peer( peer );
+        if (!c.outgoing.offer( encode( migrants ) ))
+        {
+            c.dropped.incrementAndGet();
+            return false;
+        }
+        selector.wakeup();
+        return true;
+    }
+
+    // the next batch of received chromosomes, or null if none is waiting
+    public Chromosome[] receive()
+    {
+        return arrivals.poll();
+    }
+
+    // sends <k> emigrants of <gen> to peer <peer>, then hands every
+    // chromosome received so far to gen.immigrate()
+    public void exchange( Generation gen, int peer, int k, boolean elite )
+    {
+        if (k > 0 && peer >= 0 && peer < peers())
+        {
+            send( peer, gen.emigrants( k, elite ) );
+        }
+
+        Chromosome[] in;
+        while ((in = receive()) != null)
+        {
+            gen.immigrate( in );
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        closed = true;
+        selector.wakeup();
+        try {
+            io_thread.join( 1000 );
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        server.close();
+        synchronized (peers)
+        {
+            for (Connection c : peers)
+            {
+                if (c.channel != null) c.channel.close();
+            }
+        }
+        selector.close();
+    }
+
+    //
+    // wire format
+    //
+
+    // one frame holding <migrants>
+    public static ByteBuffer encode( Chromosome[] migrants )
+    {
+        int n_bits = migrants.length == 0 ? 0 : migrants[0].n_bits;
+        int n_words = BitString.wordCount( n_bits );
+        int body = 12 + migrants.length * 8 * n_words;
+        ByteBuffer buf = ByteBuffer.allocateDirect( 4 + body );
+        buf.putInt( body ).putInt( MAGIC ).putInt( n_bits ).putInt( migrants.length );
+        for (int i = 0; i < migrants.length; i++)
+        {
+            Chromosome chr = migrants[i];
+            LongBuffer lb = buf.asLongBuffer();
+            lb.put( chr.words, chr.base, n_words );
+            buf.position( buf.position() + 8 * n_words );
+        }
+        buf.flip();
+        return buf;
+    }
+
+    // the chromosomes in one frame body (positioned just after the length,
+    // limited to it); throws if the frame is malformed or does not match
+    // <template>, before anything is allocated
+    public static Chromosome[] decode( ByteBuffer body, Chromosome template ) throws IOException
+    {
+        if (body.remaining() < 12) throw new IOException( "short frame of " + body.remaining() + " bytes" );
+        int magic = body.getInt();
+        if (magic != MAGIC) throw new IOException( "bad magic " + Integer.toHexString( magic ) );
+        int n_bits = body.getInt();
+        int count = body.getInt();
+        if (count == 0 && body.remaining() == 0) return new Chromosome[0]; // encode() gives these no size
+        if (n_bits != template.n_bits)
+            throw new IOException( "received " + n_bits + " bit chromosomes, expected " + template.n_bits );
+        int n_words = BitString.wordCount( n_bits );
+        long expected = 8L * n_words * count;
+        if (count < 0 || body.remaining() != expected)
+            throw new IOException( "frame of " + (12 + body.remaining()) + " bytes cannot hold "
+                    + count + " chromosomes of " + n_bits + " bits" );
+        Chromosome[] y = new Chromosome[count];
+        for (int i = 0; i < count; i++)
+        {
+            Chromosome chr = (Chromosome)template.clone();
+            body.asLongBuffer().get( chr.words, chr.base, n_words );
+            body.position( body.position() + 8 * n_words );
+            chr.wordsWritten();
+            chr.finishChild();
+            y[i] = chr;
+        }
+        return y;
+    }
+
+    //
+    // utility methods
+    //
+
+    // convenience method for error reporting
+    private static String err_msg() {return "error: SocketMigrationTransport: ";}
+
+    private Connection peer( int peer )
+    {
+        synchronized (peers) { return peers.get( peer ); }
+    }
+
+    //
+    // selector thread
+    //
+
+    protected void ioLoop()
+    {
+        try {
+            while (!closed)
+            {
+                // open new outbound connections, and reopen those due
+                Connection c;
+                while ((c = pending.poll()) != null) open( c );
+                long now = System.nanoTime(), wait = 0;
+                List<Connection> due = new ArrayList<Connection>();
+                for (Iterator<Connection> r = retrying.iterator(); r.hasNext(); )
+                {
+                    c = r.next();
+                    long left = c.retry_at - now;
+                    if (left > 0)
+                    {
+                        long ms = Math.max( 1, left / 1000000 );
+                        wait = wait == 0 ? ms : Math.min( wait, ms );
+                        continue;
+                    }
+                    r.remove();
+                    due.add( c );
+                }
+                for (Connection d : due) open( d ); // (may go back into retrying)
+                if (!retrying.isEmpty() && wait == 0) wait = 1;
+
+                // ask for write readiness wherever frames are queued
+                for (SelectionKey key : selector.keys())
+                {
+                    if (!key.isValid() || !(key.attachment() instanceof Connection)) continue;
+                    Connection conn = (Connection)key.attachment();
+                    if (!conn.channel.isConnected()) continue;
+                    int ops = SelectionKey.OP_READ;
+                    if (!conn.outgoing.isEmpty()) ops |= SelectionKey.OP_WRITE;
+                    key.interestOps( ops );
+                }
+
+                selector.select( wait );
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext())
+                {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    try {
+                        handle( key );
+                    } catch (IOException | RuntimeException e) {
+                        // drop this connection only; the others keep going
+                        key.cancel();
+                        key.channel().close();
+                        Object a = key.attachment();
+                        if (a instanceof Connection && ((Connection)a).address != null) lost( (Connection)a, e );
+                        else System.err.println( err_msg() + e.getMessage() );
+                    }
+                }
+            }
+        } catch (IOException e) {
+            if (!closed) System.err.println( err_msg() + e.getMessage() );
+        } catch (ClosedSelectorException e) {
+            // closed while selecting
+        }
+    }
+
+    private void handle( SelectionKey key ) throws IOException
+    {
+        if (key.isAcceptable())
+        {
+            SocketChannel ch = server.accept();
+            if (ch == null) return;
+            ch.configureBlocking( false );
+            ch.register( selector, SelectionKey.OP_READ, new Connection( null, ch ) );
+            return;
+        }
+        Connection c = (Connection)key.attachment();
+        if (key.isConnectable() && c.channel.finishConnect())
+        {
+            key.interestOps( SelectionKey.OP_READ );
+            c.failures = 0;
+            c.connected = true;
+        }
+        if (key.isValid() && key.isWritable()) write( c );
+        if (key.isValid() && key.isReadable()) read( c, key );
+    }
+
+    // starts connecting <c> to its address; a failure schedules a retry
+    private void open( Connection c )
+    {
+        try {
+            c.channel = c.address instanceof UnixDomainSocketAddress
+                    ? SocketChannel.open( StandardProtocolFamily.UNIX )
+                    : SocketChannel.open();
+            c.channel.configureBlocking( false );
+            if (c.channel.connect( c.address ))
+            {
+                c.failures = 0;
+                c.connected = true;
+                c.channel.register( selector, SelectionKey.OP_READ, c );
+            }
+            else c.channel.register( selector, SelectionKey.OP_CONNECT, c );
+        } catch (IOException e) {
+            try {
+                if (c.channel != null) c.channel.close();
+            } catch (IOException x) {
+                // already failing
+            }
+            lost( c, e );
+        }
+    }
+
+    // <c> could not connect or its connection broke: reconnect after a
+    // backoff, resending the frame it was in the middle of
+    private void lost( Connection c, Exception e )
+    {
+        c.connected = false;
+        c.channel = null;
+        c.incoming.clear();
+        ByteBuffer head = c.outgoing.peek();
+        if (head != null) head.rewind();
+        long wait = Math.min( RETRY_MAX_MILLIS, RETRY_MIN_MILLIS << Math.min( c.failures, 16 ) );
+        c.failures++;
+        c.retry_at = System.nanoTime() + wait * 1000000L;
+        retrying.add( c );
+        if (!closed)
+            System.err.println( err_msg() + c.address + ": " + e.getMessage() + ", retrying in " + wait + " ms" );
+    }
+
+    private void write( Connection c ) throws IOException
+    {
+        ByteBuffer buf;
+        while ((buf = c.outgoing.peek()) != null)
+        {
+            c.channel.write( buf );
+            if (buf.hasRemaining()) return; // socket full, wait for OP_WRITE
+            c.outgoing.poll();
+        }
+    }
+
+    private void read( Connection c, SelectionKey key ) throws IOException
+    {
+        while (true)
+        {
+            if (c.channel.read( c.incoming ) < 0)
+            {
+                if (c.address != null) throw new IOException( "connection closed by peer" );
+                key.cancel();
+                c.channel.close();
+                return;
+            }
+
+            // take every complete frame out of the buffer
+            ByteBuffer in = c.incoming;
+            in.flip();
+            boolean grown = false;
+            while (in.remaining() >= 4)
+            {
+                int len = in.getInt( in.position() );
+                if (len < 12 || len > MAX_FRAME) throw new IOException( "bad frame length " + len );
+                if (in.remaining() < 4 + len)
+                {
+                    // grow the buffer if the frame can never fit
+                    if (4 + len > in.capacity())
+                    {
+                        ByteBuffer bigger = ByteBuffer.allocateDirect( 4 + len );
+                        bigger.put( in );
+                        c.incoming = bigger;
+                        grown = true;
+                    }
+                    break;
+                }
+                ByteBuffer body = in.slice( in.position() + 4, len );
+                in.position( in.position() + 4 + len );
+                arrivals.offer( decode( body, template ) );
+            }
+            if (!grown)
+            {
+                in.compact();
+                return;
+            }
+
+            // the rest of the frame may already be waiting: read and parse again
+        }
+    }
+}
@@ -0,0 +1,304 @@
+//===========================================================
+// title = Termination.java
+// by = Brian Kim
+// description = the termination criteria a genetic algorithm
+//  can stop on, and a criterion met when any of several is
+//  met, which remembers which one fired and what the run cost
+//
+// notes:
+// - costs per check:
+//     TargetFitness, Generations, Evaluations, WallClock, Stall   O(1)
+//     DiversityCollapse   O(n * n_words) every <every> generations
+//                         (Generation.getDiversity(), shared with
+//                         anyone else reading it that generation)
+// - evaluations are fitness function calls (Generation.getEvaluations()),
+//    so fitness cache hits are free
+// - the cost of a run is measured from start(): generations,
+//    evaluations and wall-clock time
+// - a Termination is a criterion itself, so any-of groups nest
+//===========================================================
+
+package geneticalgorithm;
+
+import java.util.Arrays;
+
+public class Termination implements TerminationCriterion
+{
+    //
+    // properties (instance variables)
+    //
+    protected TerminationCriterion[] criteria;
+    protected TerminationCriterion fired; // = the criterion that was met (null = none yet)
+
+    // where the run started, and what it has cost so far
+    protected int start_count;
+    protected long start_evaluations;
+    protected long start_nanos;
+    protected int generations;
+    protected long evaluations;
+    protected long elapsed_nanos;
+    protected double best = Double.NaN;
+    private boolean started = false;
+
+    //
+    // constructors
+    //
+    public Termination( TerminationCriterion... criteria )
+    {
+        this.criteria = criteria.clone();
+    }
+
+    //
+    // accessor methods
+    //
+    public TerminationCriterion[] getCriteria() {return criteria.clone();}
+    public boolean isStarted() {return started;}
+
+    // the criterion that stopped the run (null = still running)
+    public TerminationCriterion getFired() {return fired;}
+
+    // cost of the run so far, as of the last check
+    public int getGenerations() {return generations;}
+    public long getEvaluations() {return evaluations;}
+    public long getElapsedNanos() {return elapsed_nanos;}
+    public double getBest() {return best;}
+
+    // a criterion also met when <c> is
+    public void add( TerminationCriterion c )
+    {
+        criteria = Arrays.copyOf( criteria, criteria.length + 1 );
+        criteria[criteria.length - 1] = c;
+    }
+
+    //
+    // important API
+    //
+
+    @Override
+    public void start( Generation gen )
+    {
+        started = true;
+        fired = null;
+        start_count = gen.getCount();
+        start_evaluations = gen.getEvaluations();
+        start_nanos = System.nanoTime();
+        generations = 0;
+        evaluations = 0;
+        elapsed_nanos = 0;
+        best = Double.NaN;
+        for (TerminationCriterion c : criteria) c.start( gen );
+    }
+
+    // met when any of the criteria is; the first one met (in the
+    // order they were given) is the one that fired, and it ends the run
+    @Override
+    public boolean isMet( Generation gen, double best )
+    {
+        if (!started) start( gen );
+        this.generations = gen.getCount() - start_count;
+        this.evaluations = gen.getEvaluations() - start_evaluations;
+        this.elapsed_nanos = System.nanoTime() - start_nanos;
+        this.best = best;
+        for (TerminationCriterion c : criteria)
+        {
+            if (c.isMet( gen, best ))
+            {
+                fired = c;
+                started = false;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder y = new StringBuilder( 128 );
+        y.append( fired == null ? "running" : "stopped: " + fired )
+         .append( " after " ).append( generations ).append( " generations, " )
+         .append( evaluations ).append( " evaluations, " )
+         .append( elapsed_nanos / 1000000 ).append( " ms (best " ).append( best ).append( ")" );
+        return y.toString();
+    }
+
+    //
+    // criteria
+    //
+
+    // the most fit reaches <target>
+    public static class TargetFitness implements TerminationCriterion
+    {
+        protected double target;
+
+        public TargetFitness( double target )
+        {
+            this.target = target;
+        }
+
+        public double getTarget() {return target;}
+
+        @Override
+        public void start( Generation gen ) {}
+
+        @Override
+        public boolean isMet( Generation gen, double best )
+        {
+            return best >= target;
+        }
+
+        @Override
+        public String toString() { return "target fitness " + target; }
+    }
+
+    // <max> generations have evolved
+    public static class Generations implements TerminationCriterion
+    {
+        protected int max;
+        private int start;
+
+        public Generations( int max )
+        {
+            this.max = Math.max( 0, max );
+        }
+
+        @Override
+        public void start( Generation gen ) { start = gen.getCount(); }
+
+        @Override
+        public boolean isMet( Generation gen, double best )
+        {
+            return gen.getCount() - start >= max;
+        }
+
+        @Override
+        public String toString() { return "generation budget " + max; }
+    }
+
+    // <max> fitness function calls have been made
+    public static class Evaluations implements TerminationCriterion
+    {
+        protected long max;
+        private long start;
+
+        public Evaluations( long max )
+        {
+            this.max = Math.max( 0, max );
+        }
+
+        @Override
+        public void start( Generation gen ) { start = gen.getEvaluations(); }
+
+        @Override
+        public boolean isMet( Generation gen, double best )
+        {
+            return gen.getEvaluations() - start >= max;
+        }
+
+        @Override
+        public String toString() { return "evaluation budget " + max; }
+    }
+
+    // <millis> milliseconds have gone by
+    // (checked between generations, so a run may overshoot by one)
+    public static class WallClock implements TerminationCriterion
+    {
+        protected long millis;
+        private long deadline;
+
+        public WallClock( long millis )
+        {
+            this.millis = Math.max( 0, millis );
+        }
+
+        @Override
+        public void start( Generation gen ) { deadline = System.nanoTime() + millis * 1000000L; }
+
+        @Override
+        public boolean isMet( Generation gen, double best )
+        {
+            return System.nanoTime() - deadline >= 0;
+        }
+
+        @Override
+        public String toString() { return "wall-clock budget " + millis + " ms"; }
+    }
+
+    // the best fitness has not improved by more than <epsilon> in
+    // <k> generations
+    public static class Stall implements TerminationCriterion
+    {
+        protected int k;
+        protected double epsilon;
+        private double best;
+        private int since; // = Generation.getCount() at the last improvement
+
+        public Stall( int k )
+        {
+            this( k, 0.0 );
+        }
+
+        public Stall( int k, double epsilon )
+        {
+            this.k = Math.max( 1, k );
+            this.epsilon = Math.max( 0.0, epsilon );
+        }
+
+        @Override
+        public void start( Generation gen )
+        {
+            best = Double.NEGATIVE_INFINITY;
+            since = gen.getCount();
+        }
+
+        @Override
+        public boolean isMet( Generation gen, double best )
+        {
+            if (best > this.best + epsilon)
+            {
+                this.best = best;
+                since = gen.getCount();
+                return false;
+            }
+            return gen.getCount() - since >= k;
+        }
+
+        @Override
+        public String toString() { return "no improvement in " + k + " generations"; }
+    }
+
+    // the population has converged: its mean pairwise Hamming distance
+    // over n_bits (see Diversity) is below <threshold>
+    // measured every <every> generations
+    public static class DiversityCollapse implements TerminationCriterion
+    {
+        protected double threshold;
+        protected int every;
+        private int start;
+
+        public DiversityCollapse( double threshold )
+        {
+            this( threshold, 1 );
+        }
+
+        public DiversityCollapse( double threshold, int every )
+        {
+            this.threshold = threshold;
+            this.every = Math.max( 1, every );
+        }
+
+        @Override
+        public void start( Generation gen ) { start = gen.getCount(); }
+
+        @Override
+        public boolean isMet( Generation gen, double best )
+        {
+            if ((gen.getCount() - start) % every != 0) return false;
+            Diversity d = gen.getDiversity();
+            return d.getSize() > 1 && d.getNormalizedDistance() < threshold;
+        }
+
+        @Override
+        public String toString() { return "diversity below " + threshold; }
+    }
+}
@@ -0,0 +1,26 @@
+//===========================================================
+// title = TerminationCriterion.java
+// by = Brian Kim
+// description = decides when a run of the genetic algorithm
+//  should stop
+//
+// notes:
+// - GeneticAlgorithm.evolve() calls start() before the first
+//    generation of a run and isMet() after every generation
+// - isMet() runs every generation, so it should be O(1) or
+//    close to it
+// - implementations live in Termination, which also combines
+//    them (see GeneticAlgorithm.addTermination())
+//===========================================================
+
+package geneticalgorithm;
+
+public interface TerminationCriterion
+{
+    // a run of <gen> is starting
+    void start( Generation gen );
+
+    // whether the run should stop now that <gen> has evolved, <best>
+    // being the fitness of its most fit chromosome
+    boolean isMet( Generation gen, double best );
+}
@@ -0,0 +1,86 @@
+//===========================================================
+// title = VirtualThreadEvaluator.java
+// by = Brian Kim
+// description = an evaluator that rates every chromosome on
+//  its own (virtual) thread
+//
+// notes:
+// - meant for I/O-bound fitness functions (robot trials,
+//    remote simulators) that spend most of their time waiting
+// - virtual threads need Java 21; on older runtimes this falls
+//    back to a cached pool of daemon platform threads
+//===========================================================
+
+package geneticalgorithm;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class VirtualThreadEvaluator implements Evaluator
+{
+    //
+    // properties (instance variables)
+    //
+    protected ExecutorService pool;
+    
+    //
+    // constructors
+    //
+    public VirtualThreadEvaluator()
+    {
+        pool = newThreadPerTaskExecutor();
+    }
+    
+    //
+    // evaluator interface
+    //
+    @Override
+    public void evaluate( final ChromosomeFitness<Chromosome> ff, final Chromosome[] population, 
+            final double[] fitness, int from, int to )
+    {
+        if (to <= from) return;
+        Future<?>[] tasks = new Future<?>[to - from];
+        for (int i = from; i < to; i++)
+        {
+            final int k = i;
+            tasks[i - from] = pool.submit( () -> { fitness[k] = ff.rate( population[k] ); } );
+        }
+        ChunkedPoolEvaluator.awaitAll( tasks );
+    }
+    
+    @Override
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+    
+    //
+    // utility methods
+    //
+    
+    // true if the runtime offers virtual threads (Java 21+)
+    public static boolean virtualThreadsAvailable()
+    {
+        try {
+            Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" );
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+    
+    private static ExecutorService newThreadPerTaskExecutor()
+    {
+        try {
+            return (ExecutorService)Executors.class
+                    .getMethod( "newVirtualThreadPerTaskExecutor" ).invoke( null );
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool( runnable -> {
+                Thread t = new Thread( runnable, "ga-evaluator" );
+                t.setDaemon( true );
+                return t;
+            });
+        }
+    }
+}
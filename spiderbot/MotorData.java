@@ -8,7 +8,9 @@
 
 package spiderbot;
 
+import geneticalgorithm.BitCodec;
 import geneticalgorithm.BitString;
+import geneticalgorithm.Decoder;
 import geneticalgorithm.Encodable;
 
 /**
@@ -23,6 +25,18 @@ public class MotorData implements Encodable
     protected int motorSpeed; // [0, 255]
     protected boolean direction; 
     // true == negative (reverse), false == positive (forward)
+    
+    // decodes motor data straight out of a chromosome
+    public static final Decoder<MotorData> DECODER = new Decoder<MotorData>() {
+        @Override
+        public MotorData decodeFrom( BitString source, int offset ) {
+            return MotorData.decodeFrom( source, offset );
+        }
+        @Override
+        public int n_bits() {
+            return 9;
+        }
+    };
 
     //
     // constructors
@@ -55,21 +69,18 @@ public class MotorData implements Encodable
     @Override
     public BitString encode() 
     {
-        // convert motorspeed to bits, pad higher order bits with 0's as needed
-        String motorBits = BitString.dec2bin(motorSpeed);
-        int padding = 8 - motorBits.length();
-        String pad = "";
-        for (int i = 0; i < padding; i++)
-        {
-            pad += "0";
-        }
-        
-        // convert direction to a bit
-        String all =  direction ? "1" : "0";
-        
-        // concatenate bits together
-        all += pad + motorBits;
-        return new BitString(all);
+        // [direction][speed], written straight into the bits
+        BitString y = new BitString( 9 );
+        encodeInto( y, 0 );
+        return y;
+    }
+    
+    // layout: [direction][8 bit speed, most significant bit first]
+    @Override
+    public void encodeInto( BitString target, int offset )
+    {
+        target.setBit( offset, direction ? (byte)1 : 0 );
+        BitCodec.writeUnsigned( target, offset + 1, 8, motorSpeed );
     }
     
     @Override
@@ -96,8 +107,7 @@ public class MotorData implements Encodable
         if (b.length() != 9) return null; 
         
         // get the last 8 bits and convert to decimal
-        String motorspeed_s = b.substring(1, 9);
-        int motorspeed = BitString.bin2dec(motorspeed_s);
+        int motorspeed = (int)BitCodec.parseUnsigned(b, 1, 9);
         
         // get the first bit: 1 == reverse, 0 == forward
         boolean direction = b.charAt(0) == '1';
@@ -106,6 +116,16 @@ public class MotorData implements Encodable
     
     public static MotorData bits2motorData( BitString b )
     {
-        return bin2motorData(b.toString());
+        // this function can only convert 9 bit strings
+        if (b.n_bits() != 9) return null;
+        return decodeFrom( b, 0 );
+    }
+    
+    // reads the 9 bits of <b> starting at <offset> as motor data
+    public static MotorData decodeFrom( BitString b, int offset )
+    {
+        boolean direction = b.getBit(offset) == 1;
+        int motorspeed = (int)BitCodec.readUnsigned( b, offset + 1, 8 );
+        return new MotorData( motorspeed, direction );
     }
 }
@@ -7,51 +7,86 @@
 
 package spiderbot;
 
-import geneticalgorithm.FitnessFunction;
+import geneticalgorithm.BatchFitnessFunction;
+import geneticalgorithm.Chromosome;
+import geneticalgorithm.ChromosomeFitness;
 
 /**
  *
  * @author bkim11
  */
-public class SpiderBotFitnessFunction implements FitnessFunction 
+public class SpiderBotFitnessFunction 
+    implements ChromosomeFitness<SpiderChromosome>, BatchFitnessFunction
 {
+    // rates the chromosome straight from its bits: no MotorData 
+    // objects or strings are created
     @Override
-    public double rate( Object x )
+    public double rate( SpiderChromosome x )
+    {
+        return rate( x.motorDirection(0), x.motorSpeed(0),
+                     x.motorDirection(1), x.motorSpeed(1),
+                     x.motorDirection(2), x.motorSpeed(2) );
+    }
+    
+    // rates a slice of the population in two passes: first unpack all
+    // the motors into flat arrays, then score them in one tight loop
+    @Override
+    public void rate( Chromosome[] population, int from, int to, double[] fitness )
+    {
+        int n = to - from;
+        if (n <= 0) return;
+        int[] spd = new int[3*n];
+        boolean[] dir = new boolean[3*n];
+        
+        // unpack: motor j of chromosome k lands at 3*k + j
+        for (int k = 0; k < n; k++)
+        {
+            SpiderChromosome chr = (SpiderChromosome)population[from + k];
+            for (int j = 0; j < 3; j++)
+            {
+                dir[3*k + j] = chr.motorDirection(j);
+                spd[3*k + j] = chr.motorSpeed(j);
+            }
+        }
+        
+        // score
+        for (int k = 0, m = 0; k < n; k++, m += 3)
+        {
+            fitness[from + k] = rate( dir[m], spd[m], dir[m+1], spd[m+1], dir[m+2], spd[m+2] );
+        }
+    }
+    
+    // the fitness of three motors given as (direction, speed) pairs
+    // m1 = left, m2 = back, m3 = right
+    public static double rate( boolean m1_dir, int m1_spd, 
+                               boolean m2_dir, int m2_spd,
+                               boolean m3_dir, int m3_spd )
     {
         //
         // variable declarations
         //
        
-        MotorData[] motors;   // an array of motors decoded from the chromosome
-        MotorData m1, m2, m3; // dummy variables...m1 = left, m2 = back, m3 = right
         double y;             // return value
         double err;           // total error
         double dir_err, dir_err_l, dir_err_r, dir_err_back;           // directional error (0.5)
         double spd_err, spd_err_lr, spd_err_lb, spd_err_rb; // speed error (0.5)
         // the speed of the back motor accounts for 50% of the speed error (0.25)
         
-        // 
-        // variable assignments
-        //
-        motors = (MotorData[])((SpiderChromosome)x).decode();
-        m1 = motors[0]; m2 = motors[1]; m3 = motors[2]; 
-        // m1 = left, m2 = back, m3 = right
-        
         // left/right directional sync is most important (half weight)
         // left/back and right/back directional is half as important
         double dir_weight = 0.5/3;
-        dir_err_l = m1.direction ? 0 : dir_weight;
-        dir_err_r = m2.direction ? 0 : dir_weight;
-        dir_err_back = m3.direction == false ? 0 : dir_weight;
+        dir_err_l = m1_dir ? 0 : dir_weight;
+        dir_err_r = m2_dir ? 0 : dir_weight;
+        dir_err_back = m3_dir == false ? 0 : dir_weight;
         
         // if back is too fast, then errors for left/back
         //  and right/back are automatically maxed out
         
         // errors are a function of difference between motor speeds
         //  multiplied by its weight
-        spd_err_lr = ( (double)Math.abs(m1.motorSpeed - m2.motorSpeed) / 255 ) 					   * (0.25);
-        spd_err_lb = (m3.motorSpeed > m1.motorSpeed ? 1.0 : (double)Math.abs(m1.motorSpeed/2 - m3.motorSpeed)/128) * (0.125);
-        spd_err_rb = (m3.motorSpeed > m2.motorSpeed ? 1.0 : (double)Math.abs(m2.motorSpeed/2 - m3.motorSpeed)/128) * (0.125);
+        spd_err_lr = ( (double)Math.abs(m1_spd - m2_spd) / 255 ) 					   * (0.25);
+        spd_err_lb = (m3_spd > m1_spd ? 1.0 : (double)Math.abs(m1_spd/2 - m3_spd)/128) * (0.125);
+        spd_err_rb = (m3_spd > m2_spd ? 1.0 : (double)Math.abs(m2_spd/2 - m3_spd)/128) * (0.125);
         
         // compute the errors
         dir_err = dir_err_l + dir_err_r + dir_err_back;
@@ -61,21 +96,13 @@ public class SpiderBotFitnessFunction implements FitnessFunction
         // fitness = 1 - error
         y = 1 - err;
         
-        /* debugging
-        {
-          String out = "spiderff: \n";
-          out += "  motors: \n1. " + m1 + "\n2. " + m2 + "\n3." + m3 + "\n";
-          out += "  left/right directional error: " + dir_err_lr + "\n";
-          out += "  back motor directional error: " + dir_err_back + "\n";
-          out += "  left/right motor speed ratio error: " + spd_err_lr + "\n";
-          out += "  left/back motor speed ratio error: " + spd_err_lb + "\n";
-          out += "  right/back motor speed ratio error: " + spd_err_rb + "\n";
-          out += "  error: " + err + ": fitness: " + y + "\n";
-          System.out.println( out );
-        }
-        */
-        
         return y;
     }
     
+    // rate() only reads the chromosome, so it can run in parallel
+    @Override
+    public boolean isThreadSafe()
+    {
+        return true;
+    }
 }
@@ -11,6 +11,7 @@ import lejos.util.Delay;
 import geneticalgorithm.Chromosome;
 import geneticalgorithm.Generation;
 import geneticalgorithm.GeneticAlgorithm;
+import geneticalgorithm.Termination;
 
 /**
  *
@@ -27,6 +28,11 @@ public class SpiderBotGeneticAlgorithm extends GeneticAlgorithm
 	boolean bestFound = false;
 	int wait;
 	
+	// when the target is never reached, give up after this many
+	// generations without improvement, or this much robot time
+	static final int STALL_GENERATIONS = 20;
+	static final long TIME_BUDGET = 60L * 60 * 1000; // milliseconds
+	
 	// 
 	// constructors
 	//
@@ -44,6 +50,9 @@ public class SpiderBotGeneticAlgorithm extends GeneticAlgorithm
     	right_m = Motor.B;
     	back_m = Motor.C;
     	this.wait = wait_time;
+    	
+    	addTermination(new Termination.Stall(STALL_GENERATIONS));
+    	addTermination(new Termination.WallClock(TIME_BUDGET));
     }
 
     //
@@ -55,6 +64,9 @@ public class SpiderBotGeneticAlgorithm extends GeneticAlgorithm
 		Generation g = this.getGeneration();
 		int n = g.getPopulationSize();
 		SpiderBotFitnessFunction ff = new SpiderBotFitnessFunction();
+		
+		// the budgets count from here, robot time included
+		getTermination().start(g);
 
 		// main loop
 		do
@@ -109,12 +121,13 @@ public class SpiderBotGeneticAlgorithm extends GeneticAlgorithm
 
 			// evolve the population to the next generation
 			bestFound = super.evolve();
-		} while (!bestFound); // until the best chromosome is found
+		} while (!bestFound); // until the best chromosome is found or a budget runs out
 		
 		// get the best chromosome and display its information
 		Chromosome chr = this.generation.getMostFit();
 		String msg = ""; 
-		msg += "target found:\n" ;
+		msg += isTargetReached() ? "target found:\n" : "no target:\n";
+		msg += getTermination() + "\n";
 		msg += "Generation " + g.getCount() + "\n";
 		msg += chr.toEnglishString();
 		double rate = ff.rate(chr);
@@ -6,6 +6,7 @@
 //============================================================
 
 package spiderbot;
+import geneticalgorithm.BitString;
 import geneticalgorithm.Chromosome;
 import geneticalgorithm.Encodable;
 
@@ -33,6 +34,12 @@ public class SpiderChromosome extends Chromosome
         super( ch );
     }
     
+    // 27 bits: three motors of 9 bits each
+    public SpiderChromosome( BitString bits )
+    {
+        super( bits );
+    }
+    
     // MUST be three MotorData objects in the constructor
     public SpiderChromosome( MotorData[] motors )
     {
@@ -47,18 +54,26 @@ public class SpiderChromosome extends Chromosome
     @Override
     public Encodable[] decode()
     {
-        String s = this.toString();
-        
-        String m1_s = s.substring(0, 9);
-        String m2_s = s.substring(9, 18);
-        String m3_s = s.substring(18, 27);
-        MotorData m1 = MotorData.bin2motorData(m1_s);
-        MotorData m2 = MotorData.bin2motorData(m2_s);
-        MotorData m3 = MotorData.bin2motorData(m3_s);
+        // each motor is read in place from its 9 bit slot
+        MotorData m1 = MotorData.decodeFrom(this, 0);
+        MotorData m2 = MotorData.decodeFrom(this, 9);
+        MotorData m3 = MotorData.decodeFrom(this, 18);
         
         return new MotorData[]{m1,m2,m3};
     }
     
+    // direction bit of motor i, read in place (true == reverse)
+    public boolean motorDirection( int i )
+    {
+        return this.getBit(9*i) == 1;
+    }
+    
+    // speed of motor i, read in place
+    public int motorSpeed( int i )
+    {
+        return (int)this.readUnsigned(9*i + 1, 8);
+    }
+    
     // make sure that <motors> has exactly 3 elements
     private static MotorData[] cleanMotors( MotorData[] motors )
     {
@@ -94,7 +109,7 @@ public class SpiderChromosome extends Chromosome
     @Override
     public Object clone()
     {
-        return new SpiderChromosome( (MotorData[])this.components );
+        return new SpiderChromosome( this );
     }
     
     public String toEnglishString()
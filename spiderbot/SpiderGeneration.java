@@ -27,6 +27,9 @@ public class SpiderGeneration extends Generation
     public SpiderGeneration( int pop_size, double mut_rate, int mut_vol,
     						 Generation.CrossoverStrategy x_strategy, Generation.CrossoverPoint x_pt )
     {super(pop_size,mut_rate,mut_vol,x_strategy,x_pt);}
+    public SpiderGeneration( int pop_size, double mut_rate, int mut_vol,
+    						 Generation.CrossoverStrategy x_strategy, Generation.CrossoverPoint x_pt, long seed )
+    {super(pop_size,mut_rate,mut_vol,x_strategy,x_pt,seed);}
     
     
     @Override
@@ -45,17 +48,17 @@ public class SpiderGeneration extends Generation
     	// over all the population...
         for (int i = 0; i < n; i++)
         {
-        	String chr_s = "";
+        	BitString chr_b = new BitString(27);
         	for (int j = 0; j < 3; j++)
         	{
-        		// generate a value
+        		// generate a value into the jth 9 bit slot
         		int val = speeds[k%8];
-        		chr_s += BitString.dec2bin(val,9);
+        		BitCodec.writeUnsigned(chr_b, 9*j, 9, val);
         		// iterate
         		k += incr;
         		incr += 3;
         	}
-            y[i] = new SpiderChromosome(chr_s);
+            y[i] = new SpiderChromosome(chr_b);
         }
         return y;
     }